@@ -0,0 +1,129 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Writing translations into a copy of the workspace. Every operation copies
+ * the workspace first, copyWorkspace measures the copy alone. Progress
+ * messages printed by the applier are discarded.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class ApplyBenchmark {
+
+  @Param({ "100", "1000", "5000" })
+  public int size;
+
+  private JsonObject workspace;
+  private TranslationApplier applier;
+  private Map<String, String> intentsBundle;
+  private Map<String, String> entitiesBundle;
+  private Map<String, String> dialogsBundle;
+  private File logFile;
+  private AsyncLogSink log;
+  private AsyncLogSink.Logger logger;
+
+  @Setup
+  public void setup() throws IOException {
+    // Progress messages of the applier are not part of the measurement
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+      }
+    }));
+    workspace = Workspaces.generate(size, 42);
+    TranslatableContent content = WorkspaceExtractor.extract(workspace);
+    applier = new TranslationApplier(content);
+    intentsBundle = Workspaces.translatedBundle(content, Section.INTENTS, ResourceKeys.LEGACY);
+    entitiesBundle = Workspaces.translatedBundle(content, Section.ENTITIES, ResourceKeys.LEGACY);
+    dialogsBundle = Workspaces.translatedBundle(content, Section.DIALOGS, ResourceKeys.LEGACY);
+    logFile = File.createTempFile("apply-benchmark", ".log");
+    log = new AsyncLogSink(logFile.getPath(), AsyncLogSink.QUEUE_CAPACITY);
+    logger = log.forLanguage("fr");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    log.close();
+    logFile.delete();
+  }
+
+  @Benchmark
+  public JsonObject copyWorkspace() {
+    return copy();
+  }
+
+  @Benchmark
+  public JsonObject applyIntents() {
+    JsonObject copy = copy();
+    applier.applyIntents(copy, intentsBundle, logger);
+    return copy;
+  }
+
+  @Benchmark
+  public JsonObject applyEntities() {
+    JsonObject copy = copy();
+    applier.applyEntities(copy, entitiesBundle, logger);
+    return copy;
+  }
+
+  @Benchmark
+  public JsonObject applyDialogs() {
+    JsonObject copy = copy();
+    applier.applyDialogs(copy, dialogsBundle, logger, entitiesBundle);
+    return copy;
+  }
+
+  private JsonObject copy() {
+    return WCSUtils.deepCopy(workspace).getAsJsonObject();
+  }
+}
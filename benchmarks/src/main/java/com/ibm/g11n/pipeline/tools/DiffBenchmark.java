@@ -0,0 +1,103 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Diffing workspace resource strings against the strings stored on GP, and
+ * splitting resource strings into bundles
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+
+  @Param({ "100", "1000", "5000" })
+  public int size;
+
+  private TreeMap<String, TreeSet<String>> intents;
+  private TreeMap<String, TreeSet<String>> entities;
+  private TreeMap<String, TreeSet<String>> dialogs;
+  private Map<String, String> gpIntents;
+  private Map<String, String> gpEntities;
+  private Map<String, String> gpDialogs;
+  private BundleSplitter splitter;
+
+  @Setup
+  public void setup() {
+    TranslatableContent content = WorkspaceExtractor.extract(Workspaces.generate(size, 42));
+    ResourceKeys keys = new ResourceKeys(ResourceKeys.LEGACY);
+    intents = content.toResourceMap(Section.INTENTS, keys);
+    entities = content.toResourceMap(Section.ENTITIES, keys);
+    dialogs = content.toResourceMap(Section.DIALOGS, keys);
+    gpIntents = Workspaces.modifiedBundle(intents, Section.INTENTS);
+    gpEntities = Workspaces.modifiedBundle(entities, Section.ENTITIES);
+    gpDialogs = Workspaces.modifiedBundle(dialogs, Section.DIALOGS);
+    splitter = new BundleSplitter(BundleSplitter.MAX_KEYS, BundleSplitter.MAX_BYTES);
+  }
+
+  @Benchmark
+  public Map<String, String> diffIntents() {
+    return WCS_To_GP.getUpdatedStrings(gpIntents, "benchmark-intents", intents);
+  }
+
+  @Benchmark
+  public Map<String, String> diffEntities() {
+    return WCS_To_GP.getUpdatedStrings(gpEntities, "benchmark-entities", entities);
+  }
+
+  @Benchmark
+  public Map<String, String> diffDialogs() {
+    return WCS_To_GP.getUpdatedStrings(gpDialogs, "benchmark-dialogs", dialogs);
+  }
+
+  @Benchmark
+  public List<TreeMap<String, TreeSet<String>>> splitIntents() {
+    return splitter.split(intents);
+  }
+
+  @Benchmark
+  public List<TreeMap<String, TreeSet<String>>> splitDialogs() {
+    return splitter.split(dialogs);
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Extraction of translatable content from a workspace tree or stream, and
+ * resource key generation for each section
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class ExtractBenchmark {
+
+  @Param({ "100", "1000", "5000" })
+  public int size;
+
+  @Param({ "1", "2" })
+  public int keyScheme;
+
+  private JsonObject workspace;
+  private byte[] workspaceBytes;
+  private TranslatableContent content;
+  private ResourceKeys keys;
+
+  @Setup
+  public void setup() {
+    workspace = Workspaces.generate(size, 42);
+    workspaceBytes = workspace.toString().getBytes(StandardCharsets.UTF_8);
+    content = WorkspaceExtractor.extract(workspace);
+    keys = new ResourceKeys(keyScheme);
+  }
+
+  @Benchmark
+  public TranslatableContent extractTree() {
+    return WorkspaceExtractor.extract(workspace);
+  }
+
+  @Benchmark
+  public TranslatableContent extractStream() throws IOException {
+    WorkspaceStreamExtractor extractor = new WorkspaceStreamExtractor();
+    extractor.read(new JsonReader(
+        new InputStreamReader(new ByteArrayInputStream(workspaceBytes), StandardCharsets.UTF_8)));
+    return extractor.getContent();
+  }
+
+  @Benchmark
+  public TreeMap<String, TreeSet<String>> intentKeys() {
+    return content.toResourceMap(Section.INTENTS, keys);
+  }
+
+  @Benchmark
+  public TreeMap<String, TreeSet<String>> entityKeys() {
+    return content.toResourceMap(Section.ENTITIES, keys);
+  }
+
+  @Benchmark
+  public TreeMap<String, TreeSet<String>> dialogKeys() {
+    return content.toResourceMap(Section.DIALOGS, keys);
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.gson.JsonObject;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Synthetic workspaces and GP bundles shared by the benchmarks. A workspace
+ * of size n is generated by WorkspaceGenerator with n intents of 10
+ * examples, n / 2 entities of 5 values with 3 synonyms and 2 * n dialog nodes.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class Workspaces {
+
+  private Workspaces() {
+  }
+
+  /***
+   * Generate a workspace with the default text distributions of
+   * WorkspaceGenerator
+   *
+   * @param size
+   * @param seed
+   * @return workspace
+   */
+  static JsonObject generate(int size, long seed) {
+    return new WorkspaceGenerator(seed, size, Math.max(1, size / 2), 2 * size).generate();
+  }
+
+  /***
+   * Resource strings of a section the way GP returns them, with every text
+   * translated
+   *
+   * @param content
+   * @param section
+   * @param keyScheme
+   * @return resource key -> translated text
+   */
+  static Map<String, String> translatedBundle(TranslatableContent content, Section section, int keyScheme) {
+    TreeMap<String, TreeSet<String>> resources = content.toResourceMap(section, new ResourceKeys(keyScheme));
+    Map<String, String> strings = section == Section.ENTITIES ? WCS_To_GP.fetchEntities(resources)
+        : WCS_To_GP.fetchIntents(resources);
+    Map<String, String> translated = new TreeMap<String, String>();
+    for (Entry<String, String> entry : strings.entrySet()) {
+      translated.put(entry.getKey(), entry.getValue() + " (fr)");
+    }
+    return translated;
+  }
+
+  /***
+   * Resource strings of a section as stored on GP after a tenth of them were
+   * changed in the workspace and a tenth removed from it
+   *
+   * @param resources
+   * @param section
+   * @return resource key -> source text
+   */
+  static Map<String, String> modifiedBundle(TreeMap<String, TreeSet<String>> resources, Section section) {
+    Map<String, String> strings = section == Section.ENTITIES ? WCS_To_GP.fetchEntities(resources)
+        : WCS_To_GP.fetchIntents(resources);
+    Map<String, String> gp = new TreeMap<String, String>();
+    int i = 0;
+    for (Entry<String, String> entry : strings.entrySet()) {
+      switch (i++ % 10) {
+      case 0:
+        gp.put(entry.getKey(), entry.getValue() + " old");
+        break;
+      case 1:
+        gp.put(entry.getKey() + "-removed", entry.getValue());
+        break;
+      default:
+        gp.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return gp;
+  }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.gson.stream.JsonWriter;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Log of the content GP_To_WCS could not translate, written as one JSON
+ * record per line (language, section, kind, key, text, reason). Records are
+ * handed over through a bounded queue to a single writer thread, so
+ * translating threads never format or write; they only block when the writer
+ * falls behind by a full queue. The file is flushed once, when the sink is
+ * closed.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class AsyncLogSink implements Closeable {
+
+  public final static int QUEUE_CAPACITY = 8192;
+
+  /***
+   * Why a string was left untranslated
+   */
+  enum Reason {
+    NOT_TRANSLATED, EXCEEDS_64_CHARACTERS, NOT_ON_GP;
+
+    String code() {
+      return name().toLowerCase();
+    }
+  }
+
+  // Marks the end of the records
+  private static final Record END = new Record(null, null, null, null, null);
+
+  private final String path;
+  private final BlockingQueue<Record> queue;
+  private final Thread writerThread;
+  private final AtomicLong records = new AtomicLong();
+  private final AtomicLongArray sectionRecords = new AtomicLongArray(Section.values().length);
+  private volatile IOException failure;
+
+  /***
+   * Open the log file, an existing file is replaced
+   * 
+   * @param path
+   * @param capacity
+   *          number of records queued before logging threads block
+   * @throws IOException
+   */
+  AsyncLogSink(String path, int capacity) throws IOException {
+    this.path = path;
+    this.queue = new ArrayBlockingQueue<Record>(capacity);
+    final Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+    writerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain(out);
+      }
+    }, "gp-to-wcs-log");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /***
+   * Logger bound to a target language
+   * 
+   * @param language
+   * @return logger
+   */
+  Logger forLanguage(String language) {
+    return new Logger(language);
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  long getRecordCount() {
+    return records.get();
+  }
+
+  long getRecordCount(Section section) {
+    return sectionRecords.get(section.ordinal());
+  }
+
+  /***
+   * Write the remaining records, flush and close the file
+   * 
+   * @throws IOException
+   *           if a record could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    enqueue(END);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while closing log " + path, e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void enqueue(Record record) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        queue.put(record);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drain(Writer out) {
+    try {
+      JsonWriter writer = new JsonWriter(out);
+      // One top level object per line
+      writer.setLenient(true);
+      for (Record record = take(); record != END; record = take()) {
+        if (failure == null) {
+          try {
+            record.write(writer);
+            out.write('\n');
+          } catch (IOException e) {
+            // Keep draining so that logging threads never block
+            failure = e;
+          }
+        }
+      }
+    } finally {
+      try {
+        out.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+
+  private Record take() {
+    while (true) {
+      try {
+        return queue.take();
+      } catch (InterruptedException e) {
+        // Only close() ends the writer
+      }
+    }
+  }
+
+  /***
+   * Logs records of one target language
+   */
+  final class Logger {
+    private final String language;
+
+    private Logger(String language) {
+      this.language = language;
+    }
+
+    /***
+     * Log a string left untranslated. Nothing is formatted on the calling
+     * thread
+     * 
+     * @param kind
+     * @param key
+     *          resource key, or entity:value for dialog conditions
+     * @param text
+     *          source text
+     * @param reason
+     */
+    void log(Kind kind, String key, String text, Reason reason) {
+      records.incrementAndGet();
+      sectionRecords.incrementAndGet(kind.getSection().ordinal());
+      enqueue(new Record(language, kind, key, text, reason));
+    }
+  }
+
+  private static final class Record {
+    private final String language;
+    private final Kind kind;
+    private final String key;
+    private final String text;
+    private final Reason reason;
+
+    Record(String language, Kind kind, String key, String text, Reason reason) {
+      this.language = language;
+      this.kind = kind;
+      this.key = key;
+      this.text = text;
+      this.reason = reason;
+    }
+
+    void write(JsonWriter writer) throws IOException {
+      writer.beginObject();
+      writer.name("language").value(language);
+      writer.name("section").value(kind.getSection().name().toLowerCase());
+      writer.name("kind").value(kind.name().toLowerCase());
+      writer.name("key").value(key);
+      writer.name("text").value(text);
+      writer.name("reason").value(reason.code());
+      writer.endObject();
+    }
+  }
+}
@@ -22,9 +22,11 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
 import com.google.gson.Gson;
-import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.google.gson.JsonParseException;
 import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
 
 /***
  * The root class of Watson Conversation Globalization.
@@ -32,19 +34,21 @@ import com.ibm.g11n.pipeline.client.ServiceClient;
  * @author Harpreet Chawla (hchawla@us.ibm.com)
  *
  */
-abstract class BaseUtility {
+abstract class BaseUtility implements Command {
 
   @Parameter(names = { "-s",
-      "--sourceworkspaceId" }, description = "Watson Conversation Source Workspace ID", required = true)
+      "--sourceworkspaceId" }, description = "Watson Conversation Source Workspace ID, required unless --inputFile")
   private String sourceworkspaceId;
 
-  @Parameter(names = { "-v", "--versionDate" }, description = "Watson Conversation API version Date", required = true)
+  @Parameter(names = { "-v",
+      "--versionDate" }, description = "Watson Conversation API version Date, required when WCS is called")
   private String versionDate;
 
   @Parameter(names = { "-b", "--bundleId" }, description = "Bundle Id Prefix for Globalization Pipeline")
   private String bundleId;
 
-  @Parameter(names = { "-j", "--jsonWCSCreds" }, description = "Watson Conversation Credentials file", required = true)
+  @Parameter(names = { "-j",
+      "--jsonWCSCreds" }, description = "Watson Conversation Credentials file, required when WCS is called")
   private String jsonWCSCreds;
 
   @Parameter(names = { "-g",
@@ -57,7 +61,27 @@ abstract class BaseUtility {
   @Parameter(names = { "-w", "--targetworkspaceID" }, description = "Target Workspace ID for WCS")
   private String targetworkspaceID;
 
-  private int splitSize;
+  @ParametersDelegate
+  private final TransportOptions transport = new TransportOptions();
+
+  @Parameter(names = { "--inputFile" }, description = "Read the source workspace from this exported JSON file "
+      + "instead of WCS")
+  private String inputFile;
+
+  @Parameter(names = { "--outputFile" }, description = "GP_TO_WCS only. Write the translated workspace to this file "
+      + "instead of WCS, one file per language suffixed with the language when there are several")
+  private String outputFile;
+
+  @Parameter(names = { "--metricsFile" }, description = "Prometheus textfile to write the run metrics to")
+  private String metricsFile;
+
+  @Parameter(names = { "--metricsJson" }, description = "JSON file to write a summary of the run metrics to")
+  private String metricsJson;
+
+  private GPSession gpSession;
+  // Session and WCS transport are shared with other commands of the JVM
+  private boolean sharedResources;
+  private final RunMetrics metrics = new RunMetrics(getClass().getSimpleName());
 
   protected abstract void _execute() throws WCSWorkspaceException, Exception;
 
@@ -75,66 +99,169 @@ abstract class BaseUtility {
     String password;
   }
 
+  @Override
   public void execute() throws Exception {
     try {
-      _execute();
+      run();
     } catch ( WCSWorkspaceException e){
       e.printStackTrace();
       System.exit(1);
     }
   }
 
-  protected ServiceClient getGPClient() {
-    String url = null;
-    String instanceId = null;
-    String userId = null;
-    String password = null;
-
-    if (jsonGPCreds != null) {
-      JsonGPCredentials creds;
-      try {
-        InputStreamReader reader = new InputStreamReader(new FileInputStream(jsonGPCreds), StandardCharsets.UTF_8);
-        Gson gson = new Gson();
-        creds = gson.fromJson(reader, JsonGPCredentials.class);
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+  /***
+   * Run the command, failures are thrown to the caller
+   * 
+   * @throws Exception
+   */
+  void run() throws Exception {
+    checkWorkspaceOptions();
+    configureTransport();
+    loadGPSession();
+    boolean success = false;
+    try {
+      _execute();
+      success = true;
+    } finally {
+      metrics.finish(success);
+      GPSession session = gpSession;
+      if (session != null && !sharedResources) {
+        session.printCallCounts();
       }
-      url = creds.url;
-      instanceId = creds.instanceId;
-      userId = creds.userId;
-      password = creds.password;
+      metrics.printPhases();
+      exportMetrics();
+    }
+  }
 
-      if (url == null || url.isEmpty() || password == null || password.isEmpty() || instanceId == null
-          || instanceId.isEmpty() || userId == null || userId.isEmpty()) {
-        System.out.println("Please provide Credentials for Globalization Pipeline Service");
-        System.exit(1);
+  /***
+   * Write the metrics files, if requested. Called at the end of the run and
+   * after every sync of long running commands
+   */
+  protected void exportMetrics() {
+    try {
+      if (metricsFile != null) {
+        metrics.writePrometheus(metricsFile);
+        System.out.println("Metrics written to " + metricsFile);
+      }
+      if (metricsJson != null) {
+        metrics.writeJson(metricsJson);
+        System.out.println("Metrics summary written to " + metricsJson);
       }
+    } catch (IOException e) {
+      // Metrics must not fail the run
+      System.out.println("Unable to write metrics: " + e.getMessage());
+    }
+  }
+
+  /***
+   * Metrics of this run
+   * 
+   * @return metrics
+   */
+  protected RunMetrics getMetrics() {
+    return metrics;
+  }
+
+  /***
+   * Whether the command calls the WCS API. Reading the workspace from a file
+   * needs no WCS credentials
+   * 
+   * @return true if WCS is called
+   */
+  protected boolean usesWCS() {
+    return inputFile == null;
+  }
 
+  private void checkWorkspaceOptions() throws WCSWorkspaceException {
+    if (inputFile == null && sourceworkspaceId == null) {
+      throw new WCSWorkspaceException("Please provide a source workspace id (-s) or an input file (--inputFile)");
+    }
+    if (usesWCS() && (versionDate == null || jsonWCSCreds == null)) {
+      throw new WCSWorkspaceException("Please provide the WCS API version date (-v) and credentials (-j)");
+    }
+    if (bundleId == null && sourceworkspaceId == null) {
+      throw new WCSWorkspaceException("Please provide a bundle id prefix (-b) when reading the workspace from a file");
     }
-    ServiceAccount account = ServiceAccount.getInstance(url, instanceId, userId, password);
-    return ServiceClient.getInstance(account);
   }
 
-  protected String getWCSCreds() {
+  /***
+   * Load the Globalization Pipeline session of this command, unless one was
+   * set. The same session is kept for the rest of the run
+   * 
+   * @throws WCSWorkspaceException
+   */
+  private synchronized void loadGPSession() throws WCSWorkspaceException {
+    if (gpSession == null) {
+      gpSession = GPSession.load(jsonGPCreds);
+      gpSession.setMetrics(metrics);
+    }
+  }
+
+  /***
+   * Globalization Pipeline session of this command, loaded when the run
+   * starts
+   * 
+   * @return gpSession
+   */
+  protected synchronized GPSession getGPSession() {
+    return gpSession;
+  }
+
+  synchronized void setGPSession(GPSession gpSession) {
+    this.gpSession = gpSession;
+    gpSession.setMetrics(metrics);
+  }
+
+  /***
+   * Run with a session and the WCS transport already configured, both shared
+   * with other commands running in the same JVM. Remote calls are recorded on
+   * the metrics of the shared session and counted by its owner
+   * 
+   * @param sharedSession
+   */
+  synchronized void shareResources(GPSession sharedSession) {
+    this.gpSession = sharedSession;
+    this.sharedResources = true;
+  }
+
+  protected ServiceClient getGPClient() {
+    return getGPSession().getClient();
+  }
+
+  protected BundleCatalog getBundleCatalog() throws ServiceException {
+    return getGPSession().getBundleCatalog();
+  }
+
+  /***
+   * Set up the pooled HTTP transport and the URL used for WCS API calls
+   */
+  protected void configureTransport() {
+    if (sharedResources) {
+      return;
+    }
+    transport.configure(metrics);
+  }
+
+  protected String getWCSCreds() throws WCSWorkspaceException {
 
     String username = null;
     String password = null;
     if (jsonWCSCreds != null) {
       JsonWCSCredentials creds;
-      try {
-        InputStreamReader reader = new InputStreamReader(new FileInputStream(jsonWCSCreds), StandardCharsets.UTF_8);
+      try (InputStreamReader reader = new InputStreamReader(new FileInputStream(jsonWCSCreds),
+          StandardCharsets.UTF_8)) {
         Gson gson = new Gson();
         creds = gson.fromJson(reader, JsonWCSCredentials.class);
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+      } catch (IOException | JsonParseException e) {
+        throw new WCSWorkspaceException("Unable to read Watson Conversation credentials " + jsonWCSCreds, e);
+      }
+      if (creds == null || creds.username == null || creds.username.isEmpty() || creds.password == null
+          || creds.password.isEmpty()) {
+        // Thrown rather than exiting, the sync server runs commands in its JVM
+        throw new WCSWorkspaceException("Please provide Credentials for Watson Conversation Service");
       }
       username = creds.username;
       password = creds.password;
-
-      if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
-        System.out.println("Please provide Credentials for Watson Conversation Service");
-        System.exit(1);
-      }
     }
     String creds = username + ":" + password;
     return creds;
@@ -148,6 +275,22 @@ abstract class BaseUtility {
     this.sourceworkspaceId = sourceworkspaceId;
   }
 
+  public String getInputFile() {
+    return inputFile;
+  }
+
+  public void setInputFile(String inputFile) {
+    this.inputFile = inputFile;
+  }
+
+  public String getOutputFile() {
+    return outputFile;
+  }
+
+  public void setOutputFile(String outputFile) {
+    this.outputFile = outputFile;
+  }
+
   public String getVersionDate() {
     return versionDate;
   }
@@ -180,12 +323,4 @@ abstract class BaseUtility {
     this.targetworkspaceID = targetworkspaceID;
   }
 
-  public int getSplitSize() {
-    return splitSize;
-  }
-
-  public void setSplitSize(int splitSize) {
-    this.splitSize = splitSize;
-  }
-
 }
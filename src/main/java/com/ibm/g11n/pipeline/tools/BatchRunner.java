@@ -0,0 +1,233 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.beust.jcommander.ParametersDelegate;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.g11n.pipeline.tools.SyncJobRunner.Result;
+
+/***
+ * Runs WCS_To_GP and GP_To_WCS for every workspace of a manifest in one JVM.
+ * Workspaces are processed concurrently by a bounded pool of workers sharing
+ * a single Globalization Pipeline session (client, bundle catalog and bundle
+ * information cache) and a single WCS transport, so credentials are read and
+ * bundles are listed once for the whole batch. Entries of the same workspace
+ * never run at the same time. A result is reported per workspace at the end.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@Parameters(commandDescription = "Run WCS_To_GP and GP_To_WCS for every workspace of a manifest")
+final class BatchRunner implements Command {
+
+  @Parameter(names = { "-m",
+      "--manifest" }, description = "JSON manifest of the workspaces to process", required = true)
+  private String manifest;
+
+  @Parameter(names = { "-g",
+      "--jsonGPCreds" }, description = "Globalization Pipeline Credentials file", required = true)
+  private String jsonGPCreds;
+
+  @Parameter(names = { "-j", "--jsonWCSCreds" }, description = "Watson Conversation Credentials file")
+  private String jsonWCSCreds;
+
+  @Parameter(names = { "-v", "--versionDate" }, description = "Watson Conversation API version Date")
+  private String versionDate;
+
+  @Parameter(names = { "--workers" }, description = "Number of workspaces processed in parallel")
+  private int workers = 4;
+
+  @Parameter(names = { "--report" }, description = "JSON file to write the result of every workspace to")
+  private String report;
+
+  @ParametersDelegate
+  private final TransportOptions transport = new TransportOptions();
+
+  @Parameter(names = { "--metricsFile" }, description = "Prometheus textfile to write the batch metrics to")
+  private String metricsFile;
+
+  @Parameter(names = { "--metricsJson" }, description = "JSON file to write a summary of the batch metrics to")
+  private String metricsJson;
+
+  private GPSession gpSession;
+
+  /***
+   * Process the manifest and report the results. Exits with 1 if any
+   * workspace failed
+   *
+   * @throws Exception
+   */
+  @Override
+  public void execute() throws Exception {
+    if (!run()) {
+      System.exit(1);
+    }
+  }
+
+  /***
+   * Process the manifest and report the results
+   *
+   * @return true if every workspace succeeded
+   * @throws Exception
+   */
+  boolean run() throws Exception {
+    final List<SyncJob> entries = loadManifest();
+
+    RunMetrics metrics = new RunMetrics("batch");
+    transport.configure(metrics);
+    GPSession session = getGPSession();
+    session.setMetrics(metrics);
+    final SyncJobRunner runner = new SyncJobRunner(jsonGPCreds, jsonWCSCreds, versionDate, session);
+
+    // Entries of the same workspace share a lane and run one after the other,
+    // in manifest order, as jobs of the sync server do
+    Map<String, List<Integer>> lanes = new LinkedHashMap<String, List<Integer>>();
+    for (int i = 0; i < entries.size(); i++) {
+      List<Integer> lane = lanes.get(entries.get(i).getName());
+      if (lane == null) {
+        lane = new ArrayList<Integer>();
+        lanes.put(entries.get(i).getName(), lane);
+      }
+      lane.add(i);
+    }
+
+    System.out.println("** Batch of " + entries.size() + " workspaces, " + workers + " workers **");
+    final Result[] laneResults = new Result[entries.size()];
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, lanes.size())));
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (final List<Integer> lane : lanes.values()) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int i : lane) {
+              laneResults[i] = runner.run(Integer.toString(i + 1), entries.get(i));
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw new WCSWorkspaceException("Batch worker failed", e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    List<Result> results = Arrays.asList(laneResults);
+    boolean success = printResults(results);
+    metrics.finish(success);
+    session.printCallCounts();
+    try {
+      if (report != null) {
+        writeReport(results);
+        System.out.println("Report written to " + report);
+      }
+      if (metricsFile != null) {
+        metrics.writePrometheus(metricsFile);
+        System.out.println("Metrics written to " + metricsFile);
+      }
+      if (metricsJson != null) {
+        metrics.writeJson(metricsJson);
+        System.out.println("Metrics summary written to " + metricsJson);
+      }
+    } catch (IOException e) {
+      System.out.println("Unable to write the batch results: " + e.getMessage());
+    }
+    return success;
+  }
+
+  private synchronized GPSession getGPSession() throws WCSWorkspaceException {
+    if (gpSession == null) {
+      gpSession = GPSession.load(jsonGPCreds);
+    }
+    return gpSession;
+  }
+
+  synchronized void setGPSession(GPSession gpSession) {
+    this.gpSession = gpSession;
+  }
+
+  private List<SyncJob> loadManifest() throws WCSWorkspaceException {
+    SyncJob[] entries;
+    try (InputStreamReader reader = new InputStreamReader(Files.newInputStream(Paths.get(manifest)),
+        StandardCharsets.UTF_8)) {
+      entries = new Gson().fromJson(reader, SyncJob[].class);
+    } catch (IOException | JsonParseException e) {
+      throw new WCSWorkspaceException("Unable to read manifest " + manifest, e);
+    }
+    if (entries == null || entries.length == 0) {
+      throw new WCSWorkspaceException("No workspaces in manifest " + manifest);
+    }
+    for (int i = 0; i < entries.length; i++) {
+      try {
+        entries[i].validate(true);
+      } catch (WCSWorkspaceException e) {
+        throw new WCSWorkspaceException("Manifest entry " + (i + 1) + ": " + e.getMessage());
+      }
+    }
+    return Arrays.asList(entries);
+  }
+
+  private static boolean printResults(List<Result> results) {
+    int failed = 0;
+    for (Result result : results) {
+      if (!result.succeeded()) {
+        failed++;
+      }
+    }
+    System.out.println("\n** Batch results: " + (results.size() - failed) + " succeeded, " + failed + " failed **");
+    for (Result result : results) {
+      System.out.println("   " + result);
+    }
+    return failed == 0;
+  }
+
+  private void writeReport(List<Result> results) throws IOException {
+    try (JsonWriter out = new JsonWriter(Files.newBufferedWriter(Paths.get(report), StandardCharsets.UTF_8))) {
+      out.setIndent("  ");
+      out.beginArray();
+      for (Result result : results) {
+        out.beginObject();
+        result.writeFields(out);
+        out.endObject();
+      }
+      out.endArray();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/***
+ * Bundle ids of the Globalization Pipeline instance, listed once per run and
+ * kept sorted so that the bundles of a workspace section
+ * (&lt;prefix&gt;-intents-N, &lt;prefix&gt;-entities-N, &lt;prefix&gt;-dialogs-N)
+ * are found with a range lookup instead of scanning every id.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class BundleCatalog {
+
+  private final ConcurrentSkipListSet<String> bundleIds;
+
+  BundleCatalog(Collection<String> bundleIds) {
+    this.bundleIds = new ConcurrentSkipListSet<String>(bundleIds);
+  }
+
+  boolean isEmpty() {
+    return bundleIds.isEmpty();
+  }
+
+  int size() {
+    return bundleIds.size();
+  }
+
+  boolean contains(String bundleId) {
+    return bundleIds.contains(bundleId);
+  }
+
+  /***
+   * Bundles of a workspace section, i.e. the section bundle itself and its
+   * numbered parts
+   * 
+   * @param sectionBundleName
+   *          &lt;prefix&gt;-intents, &lt;prefix&gt;-entities or
+   *          &lt;prefix&gt;-dialogs
+   * @return bundle ids in sorted order
+   */
+  NavigableSet<String> getBundles(String sectionBundleName) {
+    NavigableSet<String> bundles = new TreeSet<String>();
+    for (String id : bundleIds.subSet(sectionBundleName, true, sectionBundleName + Character.MAX_VALUE, true)) {
+      if (id.length() == sectionBundleName.length() || isPartSuffix(id, sectionBundleName.length())) {
+        bundles.add(id);
+      }
+    }
+    return bundles;
+  }
+
+  /***
+   * Section a bundle belongs to, i.e. the bundle id without its -N part
+   * 
+   * @param bundleId
+   * @return section bundle name
+   */
+  static String sectionOf(String bundleId) {
+    int dash = bundleId.lastIndexOf('-');
+    if (dash > 0 && isPartSuffix(bundleId, dash)) {
+      return bundleId.substring(0, dash);
+    }
+    return bundleId;
+  }
+
+  // -N suffix of a split bundle
+  private static boolean isPartSuffix(String id, int start) {
+    if (id.charAt(start) != '-' || id.length() == start + 1) {
+      return false;
+    }
+    for (int i = start + 1; i < id.length(); i++) {
+      if (!Character.isDigit(id.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void added(String bundleId) {
+    bundleIds.add(bundleId);
+  }
+
+  void removed(String bundleId) {
+    bundleIds.remove(bundleId);
+  }
+}
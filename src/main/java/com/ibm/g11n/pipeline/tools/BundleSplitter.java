@@ -0,0 +1,185 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/***
+ * Packs resource strings into bundles limited by number of keys and by the
+ * estimated size of the upload request. Short strings (intent examples,
+ * entity values) fill a bundle up to the key limit, long strings (dialog
+ * responses) close a bundle once the byte limit is reached.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class BundleSplitter {
+
+  static final int MAX_KEYS = 500;
+  static final long MAX_BYTES = 64 * 1024;
+
+  // "key":"value", around every entry of the JSON request body
+  private static final int ENTRY_OVERHEAD = 6;
+
+  private final int maxKeys;
+  private final long maxBytes;
+
+  BundleSplitter(int maxKeys, long maxBytes) {
+    if (maxKeys < 1 || maxBytes < 1) {
+      throw new IllegalArgumentException("Bundle limits must be positive: " + maxKeys + " keys, " + maxBytes
+          + " bytes");
+    }
+    this.maxKeys = maxKeys;
+    this.maxBytes = maxBytes;
+  }
+
+  int getMaxKeys() {
+    return maxKeys;
+  }
+
+  long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /***
+   * Whether a bundle holding keys resource strings of the given size stays
+   * within the limits
+   * 
+   * @param keys
+   * @param bytes
+   * @return true if within limits
+   */
+  boolean fits(int keys, long bytes) {
+    return keys <= maxKeys && bytes <= maxBytes;
+  }
+
+  /***
+   * Whether the content does not fit in a single bundle
+   * 
+   * @param content
+   *          resource key to String or to a collection of Strings
+   * @return true if the content has to be split
+   */
+  boolean exceeds(Map<String, ?> content) {
+    int keys = 0;
+    long bytes = 0;
+    for (Entry<String, ?> entry : content.entrySet()) {
+      keys += keyCount(entry.getValue());
+      bytes += entryBytes(entry.getKey(), entry.getValue());
+      if (!fits(keys, bytes)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /***
+   * Split content into bundles in key order. A bundle is closed when the next
+   * entry would exceed a limit, an entry exceeding the limits on its own gets
+   * a bundle of its own
+   * 
+   * @param content
+   *          resource key to String or to a collection of Strings
+   * @return bundle contents in bundle order
+   */
+  <V> List<TreeMap<String, V>> split(Map<String, V> content) {
+    List<TreeMap<String, V>> bundles = new ArrayList<TreeMap<String, V>>();
+    TreeMap<String, V> bundle = new TreeMap<String, V>();
+    int keys = 0;
+    long bytes = 0;
+    for (Entry<String, V> entry : content.entrySet()) {
+      int entryKeys = keyCount(entry.getValue());
+      long size = entryBytes(entry.getKey(), entry.getValue());
+      if (!bundle.isEmpty() && !fits(keys + entryKeys, bytes + size)) {
+        bundles.add(bundle);
+        bundle = new TreeMap<String, V>();
+        keys = 0;
+        bytes = 0;
+      }
+      bundle.put(entry.getKey(), entry.getValue());
+      keys += entryKeys;
+      bytes += size;
+    }
+    if (!bundle.isEmpty()) {
+      bundles.add(bundle);
+    }
+    return bundles;
+  }
+
+  /***
+   * Estimated request size of a resource string
+   * 
+   * @param key
+   * @param textBytes
+   *          estimated size of the value, see {@link #textBytes(String)}
+   * @return bytes
+   */
+  static long entryBytes(String key, long textBytes) {
+    return textBytes(key) + textBytes + ENTRY_OVERHEAD;
+  }
+
+  private static long entryBytes(String key, Object value) {
+    if (value instanceof Collection) {
+      // Several values are uploaded as key:0, key:1, ...
+      long bytes = 0;
+      for (Object text : (Collection<?>) value) {
+        bytes += entryBytes(key, textBytes(text.toString())) + 2;
+      }
+      return bytes;
+    }
+    return entryBytes(key, textBytes(value.toString()));
+  }
+
+  private static int keyCount(Object value) {
+    return value instanceof Collection ? ((Collection<?>) value).size() : 1;
+  }
+
+  /***
+   * Size of a String once UTF-8 encoded and escaped as a JSON string, without
+   * allocating the encoded form
+   * 
+   * @param text
+   * @return bytes
+   */
+  static long textBytes(String text) {
+    long bytes = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        bytes += 2;
+      } else if (c < 0x20) {
+        bytes += 6;
+      } else if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isSurrogate(c)) {
+        // 4 bytes per surrogate pair
+        bytes += 2;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+/***
+ * Command of the command line interface. The command object holds the
+ * options parsed by JCommander and runs once they are set
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+interface Command {
+
+  /***
+   * Run the command with the parsed options
+   *
+   * @throws Exception
+   */
+  void execute() throws Exception;
+}
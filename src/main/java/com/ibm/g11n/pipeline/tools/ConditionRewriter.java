@@ -0,0 +1,240 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.g11n.pipeline.tools.AsyncLogSink.Reason;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+
+/***
+ * Rewrites entity value references (@entity:value, @entity:(value with
+ * spaces), @entity:"value") of dialog node conditions with their translated
+ * values. The translated entity values are compiled once into a trie keyed
+ * on entity:value, so a condition is rewritten in a single scan without
+ * splitting or regular expressions. Conditions are shared by many nodes, so
+ * rewritten conditions are cached.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class ConditionRewriter {
+
+  private final Node root = new Node();
+  private final ConcurrentHashMap<String, Rewrite> cache = new ConcurrentHashMap<String, Rewrite>();
+
+  /***
+   * Compile translated entity values
+   * 
+   * @param entitiesBundle
+   *          entity:value -> translated value, may be null
+   */
+  ConditionRewriter(Map<String, String> entitiesBundle) {
+    if (entitiesBundle != null) {
+      for (Entry<String, String> entry : entitiesBundle.entrySet()) {
+        Node node = root;
+        String key = entry.getKey();
+        for (int i = 0; i < key.length(); i++) {
+          node = node.add(key.charAt(i));
+        }
+        node.translation = entry.getValue();
+      }
+    }
+  }
+
+  /***
+   * Rewrite a condition, entity values missing or not translated on GP are
+   * kept and reported to the log
+   * 
+   * @param condition
+   * @param log
+   * @return rewritten condition
+   */
+  String rewrite(String condition, AsyncLogSink.Logger log) {
+    Rewrite rewrite = cache.get(condition);
+    if (rewrite == null) {
+      rewrite = compute(condition);
+      cache.putIfAbsent(condition, rewrite);
+    }
+    for (Miss miss : rewrite.misses) {
+      log.log(Kind.DIALOG_CONDITION, miss.entityValue, condition, miss.reason);
+    }
+    return rewrite.condition;
+  }
+
+  private Rewrite compute(String condition) {
+    List<Miss> misses = new ArrayList<Miss>(0);
+    StringBuilder out = null;
+    // Condition is copied up to here
+    int copied = 0;
+    int length = condition.length();
+    for (int at = condition.indexOf('@'); at >= 0 && at < length; at = condition.indexOf('@', at + 1)) {
+      int colon = at + 1;
+      while (colon < length && isEntityChar(condition.charAt(colon))) {
+        colon++;
+      }
+      if (colon == at + 1 || colon == length || condition.charAt(colon) != ':') {
+        // Not an entity value reference
+        continue;
+      }
+      Node node = root;
+      for (int i = at + 1; node != null && i <= colon; i++) {
+        node = node.child(condition.charAt(i));
+      }
+
+      int valueStart = colon + 1;
+      int valueEnd;
+      int end;
+      Node match = null;
+      char open = valueStart < length ? condition.charAt(valueStart) : 0;
+      if (open == '(' || open == '"') {
+        // Delimited value, matched as a whole
+        int close = condition.indexOf(open == '(' ? ')' : '"', valueStart + 1);
+        if (close < 0) {
+          continue;
+        }
+        valueStart++;
+        valueEnd = close;
+        end = close + 1;
+        for (int i = valueStart; node != null && i < valueEnd; i++) {
+          node = node.child(condition.charAt(i));
+        }
+        match = node != null && node.translation != null ? node : null;
+      } else {
+        // Bare value, longest entity value ending on a word boundary
+        valueEnd = valueStart;
+        while (valueEnd < length && isValueChar(condition.charAt(valueEnd))) {
+          valueEnd++;
+        }
+        end = valueEnd;
+        for (int i = valueStart; node != null; i++) {
+          if (node.translation != null && i > valueStart && (i == length || !isValueChar(condition.charAt(i)))) {
+            match = node;
+            end = i;
+          }
+          // Bare values never span whitespace
+          node = i < length && !Character.isWhitespace(condition.charAt(i)) ? node.child(condition.charAt(i)) : null;
+        }
+        if (match != null) {
+          valueEnd = end;
+        }
+      }
+
+      String entityValue = condition.substring(at + 1, colon + 1) + condition.substring(valueStart, valueEnd);
+      if (match == null) {
+        misses.add(new Miss(entityValue, Reason.NOT_ON_GP));
+      } else if (match.translation.isEmpty()) {
+        misses.add(new Miss(entityValue, Reason.NOT_TRANSLATED));
+      } else {
+        if (out == null) {
+          out = new StringBuilder(length + 16);
+        }
+        out.append(condition, copied, colon + 1);
+        appendValue(out, match.translation, open);
+        copied = end;
+      }
+      at = end - 1;
+    }
+    if (out == null) {
+      return new Rewrite(condition, misses);
+    }
+    out.append(condition, copied, length);
+    return new Rewrite(out.toString(), misses);
+  }
+
+  // Translated values that are not a single word get delimited
+  private static void appendValue(StringBuilder out, String value, char open) {
+    if (open == '"') {
+      out.append('"').append(value).append('"');
+      return;
+    }
+    boolean word = open != '(';
+    for (int i = 0; word && i < value.length(); i++) {
+      word = isValueChar(value.charAt(i));
+    }
+    if (word) {
+      out.append(value);
+    } else {
+      out.append('(').append(value).append(')');
+    }
+  }
+
+  private static boolean isEntityChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+  }
+
+  private static boolean isValueChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+  }
+
+  private static final class Rewrite {
+    private final String condition;
+    private final List<Miss> misses;
+
+    Rewrite(String condition, List<Miss> misses) {
+      this.condition = condition;
+      this.misses = misses;
+    }
+  }
+
+  // Entity value of a condition left as is
+  private static final class Miss {
+    private final String entityValue;
+    private final Reason reason;
+
+    Miss(String entityValue, Reason reason) {
+      this.entityValue = entityValue;
+      this.reason = reason;
+    }
+  }
+
+  /***
+   * Trie node, children are kept in small parallel arrays
+   */
+  private static final class Node {
+    private char[] chars = new char[0];
+    private Node[] children = new Node[0];
+    private String translation;
+
+    Node child(char c) {
+      for (int i = 0; i < chars.length; i++) {
+        if (chars[i] == c) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    Node add(char c) {
+      Node child = child(c);
+      if (child == null) {
+        child = new Node();
+        chars = Arrays.copyOf(chars, chars.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        chars[chars.length - 1] = c;
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+}
@@ -42,6 +42,10 @@ public class ConversationUtility {
 
     jCommander.addCommand("WCS_To_GP", new WCS_To_GP(), "wcs_to_gp");
     jCommander.addCommand("GP_To_WCS", new GP_To_WCS(), "gp_to_wcs");
+    jCommander.addCommand("generate", new WorkspaceGenerator());
+    jCommander.addCommand("roundtrip", new LocalRoundTrip());
+    jCommander.addCommand("batch", new BatchRunner());
+    jCommander.addCommand("serve", new SyncServer());
 
     try {
       jCommander.parse(args);
@@ -50,7 +54,7 @@ public class ConversationUtility {
       if (parsedCommand == null || parsedCommand.equalsIgnoreCase("help")) {
         jCommander.usage();
       } else {
-        BaseUtility parsedCmd = (BaseUtility) jCommander.getCommands().get(parsedCommand).getObjects().get(0);
+        Command parsedCmd = (Command) jCommander.getCommands().get(parsedCommand).getObjects().get(0);
         parsedCmd.execute();
       }
     } catch (ParameterException e) {
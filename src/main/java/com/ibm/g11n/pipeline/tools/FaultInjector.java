@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Latency, error and throttling injected into the calls served by the local
+ * WCS and GP stand-ins. Every call waits for the configured latency, then
+ * fails with the configured error and throttle rates.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class FaultInjector {
+
+  /***
+   * Outcome of a call
+   */
+  enum Fault {
+    NONE, ERROR, THROTTLE
+  }
+
+  private final long latencyMillis;
+  private final long jitterMillis;
+  private final double errorRate;
+  private final double throttleRate;
+  private final Random random;
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+
+  /***
+   * @param latencyMillis
+   *          minimum latency of a call
+   * @param jitterMillis
+   *          random latency added to the minimum, up to this value
+   * @param errorRate
+   *          share of calls failing, 0 to 1
+   * @param throttleRate
+   *          share of calls rejected as throttled, 0 to 1
+   * @param seed
+   */
+  FaultInjector(long latencyMillis, long jitterMillis, double errorRate, double throttleRate, long seed) {
+    if (errorRate < 0 || throttleRate < 0 || errorRate + throttleRate > 1) {
+      throw new IllegalArgumentException("Error and throttle rates must be between 0 and 1 together");
+    }
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+    this.errorRate = errorRate;
+    this.throttleRate = throttleRate;
+    this.random = new Random(seed);
+  }
+
+  /***
+   * No latency and no faults
+   *
+   * @return injector
+   */
+  static FaultInjector none() {
+    return new FaultInjector(0, 0, 0, 0, 0);
+  }
+
+  /***
+   * Wait for the latency of a call and pick its outcome
+   *
+   * @return fault
+   * @throws InterruptedException
+   */
+  Fault call() throws InterruptedException {
+    calls.incrementAndGet();
+    long latency;
+    double outcome;
+    synchronized (random) {
+      latency = latencyMillis + (jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0);
+      outcome = random.nextDouble();
+    }
+    if (latency > 0) {
+      TimeUnit.MILLISECONDS.sleep(latency);
+    }
+    if (outcome < errorRate) {
+      errors.incrementAndGet();
+      return Fault.ERROR;
+    }
+    if (outcome < errorRate + throttleRate) {
+      throttled.incrementAndGet();
+      return Fault.THROTTLE;
+    }
+    return Fault.NONE;
+  }
+
+  long getCalls() {
+    return calls.get();
+  }
+
+  long getErrors() {
+    return errors.get();
+  }
+
+  long getThrottled() {
+    return throttled.get();
+  }
+
+  @Override
+  public String toString() {
+    return calls.get() + " calls, " + errors.get() + " errors, " + throttled.get() + " throttled";
+  }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/***
+ * Globalization Pipeline session shared by a command for its whole run.
+ * Credentials are read once and a single client is used for every remote
+ * call. The session counts the calls issued through its client and caches
+ * bundle information.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class GPSession {
+
+  private final ServiceClient client;
+  private final ConcurrentHashMap<String, AtomicLong> callCounts = new ConcurrentHashMap<String, AtomicLong>();
+  private final ConcurrentHashMap<String, FutureTask<BundleData>> bundleInfo =
+      new ConcurrentHashMap<String, FutureTask<BundleData>>();
+  private final AtomicLong bundleInfoHits = new AtomicLong();
+  private volatile BundleCatalog bundleCatalog;
+  private volatile RunMetrics metrics;
+
+  GPSession(ServiceClient delegate) {
+    this.client = new SessionServiceClient(delegate, this);
+  }
+
+  /***
+   * Create a session from Globalization Pipeline credentials file
+   *
+   * @param jsonGPCreds
+   * @return session
+   * @throws WCSWorkspaceException
+   *           if the credentials file is unreadable or incomplete
+   */
+  static GPSession load(String jsonGPCreds) throws WCSWorkspaceException {
+    String url = null;
+    String instanceId = null;
+    String userId = null;
+    String password = null;
+
+    if (jsonGPCreds != null) {
+      BaseUtility.JsonGPCredentials creds;
+      try (InputStreamReader reader = new InputStreamReader(new FileInputStream(jsonGPCreds),
+          StandardCharsets.UTF_8)) {
+        Gson gson = new Gson();
+        creds = gson.fromJson(reader, BaseUtility.JsonGPCredentials.class);
+      } catch (IOException | JsonParseException e) {
+        throw new WCSWorkspaceException("Unable to read Globalization Pipeline credentials " + jsonGPCreds, e);
+      }
+      if (creds == null) {
+        throw new WCSWorkspaceException("Please provide Credentials for Globalization Pipeline Service");
+      }
+      url = creds.url;
+      instanceId = creds.instanceId;
+      userId = creds.userId;
+      password = creds.password;
+
+      if (url == null || url.isEmpty() || password == null || password.isEmpty() || instanceId == null
+          || instanceId.isEmpty() || userId == null || userId.isEmpty()) {
+        // Thrown rather than exiting, the sync server loads it in its JVM
+        throw new WCSWorkspaceException("Please provide Credentials for Globalization Pipeline Service");
+      }
+
+    }
+    ServiceAccount account = ServiceAccount.getInstance(url, instanceId, userId, password);
+    return new GPSession(ServiceClient.getInstance(account));
+  }
+
+  /***
+   * Thread safe client to be used for all Globalization Pipeline calls
+   *
+   * @return client
+   */
+  ServiceClient getClient() {
+    return client;
+  }
+
+  /***
+   * Catalog of bundle ids on GP. Bundles are listed on first use only; bundles
+   * created or deleted through the session client keep it up to date
+   *
+   * @return bundleCatalog
+   * @throws ServiceException
+   */
+  BundleCatalog getBundleCatalog() throws ServiceException {
+    BundleCatalog catalog = bundleCatalog;
+    if (catalog == null) {
+      synchronized (this) {
+        catalog = bundleCatalog;
+        if (catalog == null) {
+          Set<String> bundleIds = client.getBundleIds();
+          catalog = new BundleCatalog(bundleIds == null ? Collections.<String> emptySet() : bundleIds);
+          bundleCatalog = catalog;
+        }
+      }
+    }
+    return catalog;
+  }
+
+  void bundleCreated(String bundleId) {
+    BundleCatalog catalog = bundleCatalog;
+    if (catalog != null) {
+      catalog.added(bundleId);
+    }
+  }
+
+  void bundleDeleted(String bundleId) {
+    BundleCatalog catalog = bundleCatalog;
+    if (catalog != null) {
+      catalog.removed(bundleId);
+    }
+  }
+
+  /***
+   * Bundle information, fetched at most once per bundle. Concurrent lookups of
+   * the same bundle wait for a single remote call. Changing or deleting the
+   * bundle through the session client drops the cached entry
+   *
+   * @param bundleId
+   * @param remote
+   * @return bundleData
+   * @throws ServiceException
+   */
+  BundleData getBundleInfo(final String bundleId, final ServiceClient remote) throws ServiceException {
+    FutureTask<BundleData> task = bundleInfo.get(bundleId);
+    if (task == null) {
+      FutureTask<BundleData> newTask = new FutureTask<BundleData>(new Callable<BundleData>() {
+        @Override
+        public BundleData call() throws ServiceException {
+          countCall("getBundleInfo");
+          long start = System.nanoTime();
+          try {
+            return remote.getBundleInfo(bundleId);
+          } finally {
+            recordCall("getBundleInfo", start);
+          }
+        }
+      });
+      task = bundleInfo.putIfAbsent(bundleId, newTask);
+      if (task == null) {
+        task = newTask;
+        newTask.run();
+      } else {
+        bundleInfoHits.incrementAndGet();
+      }
+    } else {
+      bundleInfoHits.incrementAndGet();
+    }
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      // Do not cache failures
+      bundleInfo.remove(bundleId, task);
+      Throwable cause = e.getCause();
+      if (cause instanceof ServiceException) {
+        throw (ServiceException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ServiceException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException("Interrupted while fetching bundle " + bundleId, e);
+    }
+  }
+
+  /***
+   * Forget the bundle catalog and the cached bundle information, so that
+   * changes made outside of the session are seen. Used by long running
+   * sessions
+   */
+  synchronized void clearCaches() {
+    bundleCatalog = null;
+    bundleInfo.clear();
+  }
+
+  void invalidateBundleInfo(String bundleId) {
+    bundleInfo.remove(bundleId);
+  }
+
+  void countCall(String operation) {
+    AtomicLong counter = callCounts.get(operation);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = callCounts.putIfAbsent(operation, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    counter.incrementAndGet();
+  }
+
+  /***
+   * Metrics receiving the latency of the calls and the strings exchanged
+   *
+   * @param runMetrics
+   */
+  void setMetrics(RunMetrics runMetrics) {
+    metrics = runMetrics;
+  }
+
+  void recordCall(String operation, long startNanos) {
+    RunMetrics runMetrics = metrics;
+    if (runMetrics != null) {
+      runMetrics.observe("gp", operation, System.nanoTime() - startNanos);
+    }
+  }
+
+  void recordStrings(String bundleId, Map<String, String> strings) {
+    RunMetrics runMetrics = metrics;
+    if (runMetrics != null && strings != null) {
+      long deleted = 0;
+      for (String value : strings.values()) {
+        if (value == null) {
+          deleted++;
+        }
+      }
+      String section = RunMetrics.sectionOf(bundleId);
+      runMetrics.addStrings(section, "uploaded", strings.size() - deleted);
+      if (deleted > 0) {
+        runMetrics.addStrings(section, "deleted", deleted);
+      }
+    }
+  }
+
+  void recordEntries(String bundleId, Map<String, ?> entries) {
+    RunMetrics runMetrics = metrics;
+    if (runMetrics != null && entries != null) {
+      runMetrics.addStrings(RunMetrics.sectionOf(bundleId), "uploaded", entries.size());
+    }
+  }
+
+  void recordFetched(String bundleId, long count) {
+    RunMetrics runMetrics = metrics;
+    if (runMetrics != null) {
+      runMetrics.addStrings(RunMetrics.sectionOf(bundleId), "fetched", count);
+    }
+  }
+
+  /***
+   * Number of remote calls issued per client operation
+   *
+   * @return callCounts
+   */
+  Map<String, Long> getCallCounts() {
+    Map<String, Long> counts = new TreeMap<String, Long>();
+    for (Entry<String, AtomicLong> entry : callCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  long getTotalCalls() {
+    long total = 0;
+    for (AtomicLong counter : callCounts.values()) {
+      total += counter.get();
+    }
+    return total;
+  }
+
+  void printCallCounts() {
+    System.out.println("\n** Globalization Pipeline calls: " + getTotalCalls() + " **");
+    if (bundleInfoHits.get() > 0) {
+      System.out.println("   getBundleInfo served from cache -> " + bundleInfoHits.get());
+    }
+    for (Entry<String, Long> entry : getCallCounts().entrySet()) {
+      System.out.println("   " + entry.getKey() + " -> " + entry.getValue());
+    }
+  }
+}
@@ -16,22 +16,29 @@
 
 package com.ibm.g11n.pipeline.tools;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
+import com.beust.jcommander.Parameter;
 import com.google.gson.JsonObject;
 import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
 
 /***
  * Globalization Pipeline to Watson Conversation Utility
@@ -41,6 +48,22 @@ import com.ibm.g11n.pipeline.client.ServiceException;
  */
 public class GP_To_WCS extends BaseUtility {
 
+  @Parameter(names = {
+      "--languageThreads" }, description = "Number of target languages translated and posted in parallel")
+  private int languageThreads = 4;
+
+  @Parameter(names = {
+      "--logFile" }, description = "File listing the content left untranslated, one JSON record per line")
+  private String logFile;
+
+  // Several target languages are written to one output file each
+  private boolean languageSuffix;
+
+  @Override
+  protected boolean usesWCS() {
+    return super.usesWCS() || getOutputFile() == null;
+  }
+
   @Override
   protected void _execute() throws Exception {
 
@@ -49,108 +72,204 @@ public class GP_To_WCS extends BaseUtility {
     String targetLanguage = getTargetLanguage();
     String bundleIdPrefix = getBundleId();
 
-    if (targetLanguage != null) {
-      String[] langs = targetLanguage.split(",");
-      if (langs.length > 1) {
-        throw new WCSWorkspaceException("\n Please provide only one target language for GP_To_WCS Utility");
-      }
-    } else {
+    if (targetLanguage == null || targetLanguage.trim().isEmpty()) {
       throw new WCSWorkspaceException("Please provide at least one target language for GP_To_WCS Utility");
     }
+    List<String> langs = new ArrayList<String>();
+    for (String lang : targetLanguage.split(",")) {
+      if (!lang.trim().isEmpty()) {
+        langs.add(lang.trim());
+      }
+    }
+    languageSuffix = langs.size() > 1;
+    // Target workspace ids are matched to target languages by position
+    List<String> targetWorkspaceIds = new ArrayList<String>();
+    if (getTargetworkspaceID() != null) {
+      for (String id : getTargetworkspaceID().split(",")) {
+        targetWorkspaceIds.add(id.trim());
+      }
+      if (targetWorkspaceIds.size() != langs.size()) {
+        throw new WCSWorkspaceException("\n Please provide one target workspace id per target language");
+      }
+    }
+
     // Get Workspace in JSON format from WCS API
+    RunMetrics metrics = getMetrics();
+    long start = System.nanoTime();
     JsonObject jsonWCSPayload = getConvWorkspace();
+    metrics.addPhase("fetch_workspace", System.nanoTime() - start);
 
     if (jsonWCSPayload.size() > 0) {
-      final String intents = "-intents";
-      final String entities = "-entities";
-      final String dialogs = "-dialogs";
+      // Choose between BundleId and workspaceID. Preference given to BundleId
+      String prefix = bundleIdPrefix != null ? bundleIdPrefix : sourceWorkspaceId;
 
-      // Fetch Bundles from GP
-      String intentsBundleName = null;
-      String entitiesBundleName = null;
-      String dialogsBundleName = null;
+      // Locate translatable content once, it is the same for every copy
+      start = System.nanoTime();
+      TranslatableContent content = WorkspaceExtractor.extract(jsonWCSPayload);
+      TranslationApplier applier = new TranslationApplier(content);
+      metrics.addPhase("extract", System.nanoTime() - start);
+      metrics.addExtracted(content);
 
-      if (bundleIdPrefix != null) {
-        intentsBundleName = bundleIdPrefix + intents;
-        intentsBundleName = bundleIdPrefix + entities;
-        intentsBundleName = bundleIdPrefix + dialogs;
-
-      } else {
-        intentsBundleName = sourceWorkspaceId + intents;
-        entitiesBundleName = sourceWorkspaceId + entities;
-        dialogsBundleName = sourceWorkspaceId + dialogs;
+      // Every run gets its own log unless a file is given
+      String logPath = logFile != null ? logFile
+          : "gp_to_wcs_" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".log";
+      AsyncLogSink log = new AsyncLogSink(logPath, AsyncLogSink.QUEUE_CAPACITY);
+      start = System.nanoTime();
+      try {
+        if (langs.size() == 1) {
+          String targetWorkspaceId = targetWorkspaceIds.isEmpty() ? null : targetWorkspaceIds.get(0);
+          translateWorkspace(jsonWCSPayload, applier, prefix, langs.get(0), targetWorkspaceId,
+              log.forLanguage(langs.get(0)));
+        } else {
+          translateLanguages(jsonWCSPayload, applier, prefix, langs, targetWorkspaceIds, log);
+        }
+      } finally {
+        metrics.addPhase("translate", System.nanoTime() - start);
+        log.close();
+        for (Section section : Section.values()) {
+          metrics.addStrings(RunMetrics.label(section), "untranslated", log.getRecordCount(section));
+        }
+        System.out.println("\n** " + log.getRecordCount() + " untranslated strings logged to " + log.getPath() + " **");
       }
+    } else {
+      throw new WCSWorkspaceException("No Workspace retrieved from WCS");
+    }
+  }
 
-      FileWriter fw = new FileWriter("gp_to_wcs.log");
-      BufferedWriter bw = new BufferedWriter(fw);
-
-      // Get Intent Resource Strings
-      Map<String, String> intentsBundle = checkExistingBundles(intentsBundleName, targetLanguage);
-      if (intentsBundle == null || intentsBundle.isEmpty()) {
-        System.out.println("  **No Intents Bundles Exist on GP....");
-      } else {
-        // update Intents in source conversation workspace with translated
-        // content
-        bw.write("*********************************************************\n");
-        bw.write("************************ INTENTS ************************\n");
-        bw.write("*********************************************************\n");
-        bw.write("\n");
-        bw.flush();
-        updateIntents(jsonWCSPayload, intentsBundle, bw);
+  /***
+   * Translate the source workspace into several target languages at once. Each
+   * language works on its own copy of the workspace and is posted to WCS
+   * independently
+   * 
+   * @param jsonWCSPayload
+   * @param applier
+   * @param prefix
+   * @param langs
+   * @param targetWorkspaceIds
+   * @param log
+   * @throws WCSWorkspaceException
+   */
+  private void translateLanguages(final JsonObject jsonWCSPayload, final TranslationApplier applier,
+      final String prefix, List<String> langs, List<String> targetWorkspaceIds, final AsyncLogSink log)
+      throws WCSWorkspaceException {
+    System.out.println("\n** Translating workspace into " + langs.size() + " languages **");
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(languageThreads, langs.size())));
+    Map<String, Future<Long>> results = new LinkedHashMap<String, Future<Long>>();
+    try {
+      for (int i = 0; i < langs.size(); i++) {
+        final String lang = langs.get(i);
+        final String targetWorkspaceId = targetWorkspaceIds.isEmpty() ? null : targetWorkspaceIds.get(i);
+        results.put(lang, executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            long start = System.nanoTime();
+            // Copied by the task, so that at most languageThreads copies are
+            // alive at the same time. The source is only read
+            JsonObject langPayload = WCSUtils.deepCopy(jsonWCSPayload).getAsJsonObject();
+            translateWorkspace(langPayload, applier, prefix, lang, targetWorkspaceId, log.forLanguage(lang));
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          }
+        }));
       }
 
-      // Get Entity Resource Strings
-      Map<String, String> entitiesBundle = checkExistingBundles(entitiesBundleName, targetLanguage);
-      if (entitiesBundle == null || entitiesBundle.isEmpty()) {
-        System.out.println("  **No Entities Bundles Exist on GP....");
-      } else {
-        // update Entities in source conversation workspace with translated
-        // content
-        bw.write("*********************************************************\n");
-        bw.write("************************ ENTITIES ***********************\n");
-        bw.write("*********************************************************\n");
-        bw.write("\n");
-        bw.flush();
-        updateEntities(jsonWCSPayload, entitiesBundle, bw);
+      int failed = 0;
+      System.out.println("\n** Results per target language **");
+      for (Entry<String, Future<Long>> result : results.entrySet()) {
+        try {
+          System.out.println("   " + result.getKey() + " -> OK (" + result.getValue().get() + " ms)");
+        } catch (ExecutionException e) {
+          failed++;
+          System.out.println("   " + result.getKey() + " -> FAILED: " + e.getCause().getMessage());
+        }
       }
-
-      // Get Dialogs Resource Strings
-      Map<String, String> dialogsBundle = checkExistingBundles(dialogsBundleName, targetLanguage);
-      if (dialogsBundle == null || dialogsBundle.isEmpty()) {
-        System.out.println("  **No Dialogs Bundles Exist on GP....");
-      } else {
-        // update Dialog Nodes in source conversation workspace with
-        // translated content
-        bw.write("*********************************************************\n");
-        bw.write("************************ DIALOGS ***********************\n");
-        bw.write("*********************************************************\n");
-        bw.write("\n");
-        bw.flush();
-        updateDialogs(jsonWCSPayload, dialogsBundle, bw, entitiesBundle);
+      if (failed > 0) {
+        throw new WCSWorkspaceException(failed + " of " + langs.size() + " target languages failed");
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WCSWorkspaceException("Interrupted while translating workspace", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      if ((intentsBundle != null && !intentsBundle.isEmpty())
-          || (entitiesBundle != null && !entitiesBundle.isEmpty())
-          || (dialogsBundle != null && !dialogsBundle.isEmpty())) {
-        // Set target Language from source conversation workspace
-        String newName = null;
-        if (!jsonWCSPayload.isJsonNull()) {
-          jsonWCSPayload.addProperty("language", targetLanguage);
-          // Set New name for workspace
-          newName = jsonWCSPayload.get("name").getAsString();
-          if (newName != null && !newName.isEmpty()) {
-            newName = newName + "_" + targetLanguage;
-            jsonWCSPayload.addProperty("name", newName);
-          }
-        } else {
-          throw new WCSWorkspaceException("No Workspace retrieved from WCS");
-        }
+  /***
+   * Replace translatable content of the workspace with resource strings of the
+   * target language and create or update the target workspace on WCS
+   * 
+   * @param jsonWCSPayload
+   * @param applier
+   *          applies translations to the translatable content of the
+   *          workspace
+   * @param prefix
+   * @param targetLanguage
+   * @param targetWorkspaceId
+   * @param log
+   *          untranslated content of the target language
+   * @throws Exception
+   */
+  private void translateWorkspace(JsonObject jsonWCSPayload, TranslationApplier applier, String prefix,
+      String targetLanguage, String targetWorkspaceId, AsyncLogSink.Logger log) throws Exception {
+    final String intents = "-intents";
+    final String entities = "-entities";
+    final String dialogs = "-dialogs";
+
+    // Fetch Bundles from GP
+    String intentsBundleName = prefix + intents;
+    String entitiesBundleName = prefix + entities;
+    String dialogsBundleName = prefix + dialogs;
+
+    // Get Intent Resource Strings
+    Map<String, String> intentsBundle = checkExistingBundles(intentsBundleName, targetLanguage);
+    if (intentsBundle == null || intentsBundle.isEmpty()) {
+      System.out.println("  **No Intents Bundles Exist on GP....");
+    } else {
+      // update Intents in source conversation workspace with translated
+      // content
+      applier.applyIntents(jsonWCSPayload, intentsBundle, log);
+    }
+
+    // Get Entity Resource Strings
+    Map<String, String> entitiesBundle = checkExistingBundles(entitiesBundleName, targetLanguage);
+    if (entitiesBundle == null || entitiesBundle.isEmpty()) {
+      System.out.println("  **No Entities Bundles Exist on GP....");
+    } else {
+      // update Entities in source conversation workspace with translated
+      // content
+      applier.applyEntities(jsonWCSPayload, entitiesBundle, log);
+    }
+
+    // Get Dialogs Resource Strings
+    Map<String, String> dialogsBundle = checkExistingBundles(dialogsBundleName, targetLanguage);
+    if (dialogsBundle == null || dialogsBundle.isEmpty()) {
+      System.out.println("  **No Dialogs Bundles Exist on GP....");
+    } else {
+      // update Dialog Nodes in source conversation workspace with
+      // translated content
+      applier.applyDialogs(jsonWCSPayload, dialogsBundle, log, entitiesBundle);
+    }
 
-        // Create or Update conversation workspace with translated content
-        checkWCSWorkspace(jsonWCSPayload);
+    if ((intentsBundle != null && !intentsBundle.isEmpty())
+        || (entitiesBundle != null && !entitiesBundle.isEmpty())
+        || (dialogsBundle != null && !dialogsBundle.isEmpty())) {
+      // Set target Language from source conversation workspace
+      String newName = null;
+      if (!jsonWCSPayload.isJsonNull()) {
+        jsonWCSPayload.addProperty("language", targetLanguage);
+        // Set New name for workspace
+        newName = jsonWCSPayload.get("name").getAsString();
+        if (newName != null && !newName.isEmpty()) {
+          newName = newName + "_" + targetLanguage;
+          jsonWCSPayload.addProperty("name", newName);
+        }
       } else {
-        throw new WCSWorkspaceException("No Workspace created for WCS. Nothing retreived from GP");
+        throw new WCSWorkspaceException("No Workspace retrieved from WCS");
       }
+
+      // Create or Update conversation workspace with translated content
+      checkWCSWorkspace(jsonWCSPayload, targetWorkspaceId, targetLanguage);
+    } else {
+      throw new WCSWorkspaceException("No Workspace created for WCS. Nothing retreived from GP");
     }
   }
 
@@ -159,13 +278,24 @@ public class GP_To_WCS extends BaseUtility {
    * an existing workspace if target workspace id is provided
    * 
    * @param jsonWCSPayload
+   * @param targetWorkspaceId
+   * @param targetLanguage
    * @return
    * @throws IOException
+   * @throws WCSWorkspaceException
    */
-  private void checkWCSWorkspace(JsonObject jsonWCSPayload) throws IOException {
+  private void checkWCSWorkspace(JsonObject jsonWCSPayload, String targetWorkspaceId, String targetLanguage)
+      throws IOException, WCSWorkspaceException {
+
+    // Write to a file instead of WCS
+    if (getOutputFile() != null) {
+      long start = System.nanoTime();
+      WCSUtils.writeWorkspaceFile(outputFile(targetLanguage), jsonWCSPayload);
+      getMetrics().addPhase("write_workspace", System.nanoTime() - start);
+      return;
+    }
 
     // Fetch Command Line Params
-    String targetWorkspaceId = getTargetworkspaceID();
     String versionDate = getVersionDate();
 
     // Get WCS Creds
@@ -173,315 +303,31 @@ public class GP_To_WCS extends BaseUtility {
     String authorizationHeader = "Basic " + Base64.getEncoder().encodeToString((wcsCreds).getBytes());
 
     // Create or Update Watson Conv Workspace
-    WCSUtils.putWCSWorkspace(targetWorkspaceId, authorizationHeader, versionDate, jsonWCSPayload);
-  }
-
-  /***
-   * Parse Intents in source workspace and update it with translated content
-   * 
-   * @param jsonWCSPayload
-   * @param intentsBundle
-   * @param bw
-   * @return
-   * @throws IOException
-   */
-  private void updateIntents(JsonObject jsonWCSPayload, Map<String, String> intentsBundle, BufferedWriter bw)
-      throws IOException {
-    // Fetch Intents
-    System.out.println("\n");
-    System.out.println("*** Updating Intents on WCS with Translatable Contents ***");
-    JsonArray intents = jsonWCSPayload.getAsJsonArray("intents");
-    String keyTobeInserted = null;
-    for (JsonElement intentsArray : intents) {
-      JsonObject intentObj = intentsArray.getAsJsonObject();
-      JsonArray intentEx = (JsonArray) intentObj.get("examples");
-      Set<String> intentSet = new HashSet<String>(intentEx.size());
-      List<Integer> removeElements = new ArrayList<Integer>();
-      int i = 0;
-      for (JsonElement intentsText : intentEx) {
-        JsonObject intentTextObj = intentsText.getAsJsonObject();
-        String textIntent = intentTextObj.get("text").getAsString();
-        if (textIntent != null && textIntent.length() > 0) {
-          int textIntentHash = textIntent.hashCode();
-          String result = Integer.toHexString(textIntentHash);
-          String append = null;
-          if (textIntent.length() < 5) {
-            append = textIntent.substring(0, textIntent.length());
-          } else {
-            append = textIntent.substring(0, 4);
-          }
-          result = append + "_" + result;
-          if (intentsBundle.containsKey(result)) {
-            keyTobeInserted = intentsBundle.get(result);
-            if (!keyTobeInserted.isEmpty()) {
-              String newKey = keyTobeInserted.toLowerCase();
-              if (!intentSet.contains(newKey)) {
-                intentSet.add(newKey);
-                intentTextObj.addProperty("text", keyTobeInserted);
-              } else {
-                removeElements.add(i);
-              }
-            } else {
-              bw.write(String.format("Intent Text -> %s was not translated by GP\n", textIntent));
-            }
-          }
-          i++;
-        }
-      }
-      // Remove duplicate JSON elements
-      for (int k = removeElements.size() - 1; k >= 0; k--) {
-        intentEx.remove(intentEx.get(removeElements.get(k)));
-      }
-      removeElements.clear();
+    long start = System.nanoTime();
+    try {
+      WCSUtils.putWCSWorkspace(targetWorkspaceId, authorizationHeader, versionDate, jsonWCSPayload);
+    } finally {
+      getMetrics().addPhase("post_workspace", System.nanoTime() - start);
     }
-    System.out.println("    Intents Updated");
-    bw.write("\n");
-    bw.flush();
   }
 
   /***
-   * Parse Entities in source workspace and update it with translated content
+   * Output file of a target language. With several target languages the
+   * language is inserted before the extension, out.json becomes out_fr.json
    * 
-   * @param jsonResponseObject
-   * @param entityMap
-   * @param bw
-   * @return
-   * @throws IOException
+   * @param targetLanguage
+   * @return path
    */
-  private void updateEntities(JsonObject jsonResponseObject, Map<String, String> entityMap, BufferedWriter bw)
-      throws IOException {
-    // Fetch Entities
-    System.out.println("\n");
-    System.out.println("*** Updating Entities on WCS with Translatable Contents ***");
-    JsonArray entities = jsonResponseObject.getAsJsonArray("entities");
-    for (JsonElement entitiesArray : entities) {
-      JsonObject entityObj = entitiesArray.getAsJsonObject();
-      JsonArray valuesEx = (JsonArray) entityObj.get("values");
-      // get entity
-      String entityValue = entityObj.get("entity").getAsString();
-
-      Set<String> intentSet = new HashSet<String>(valuesEx.size());
-      List<Integer> removeElements = new ArrayList<Integer>();
-      int i = 0;
-      for (JsonElement entitiesText : valuesEx) {
-        JsonObject entityValObj = entitiesText.getAsJsonObject();
-        // get value
-        String entityVal = entityValObj.get("value").getAsString();
-        String entityKey = entityValue + ":" + entityVal;
-        if (entityMap.containsKey(entityKey)) {
-          String keyTobeInserted = entityMap.get(entityKey);
-          if (!keyTobeInserted.isEmpty()) {
-            String newKey = keyTobeInserted.toLowerCase();
-            if (keyTobeInserted.length() > 64) {
-              bw.write(String.format("Entity -> %s Value -> %s exceeds limit of 64 characters in target language \n",
-                  entityValue, entityVal));
-            } else {
-              if (!intentSet.contains(newKey)) {
-                intentSet.add(newKey);
-                entityValObj.addProperty("value", keyTobeInserted);
-              } else {
-                removeElements.add(i);
-              }
-            }
-          } else {
-            bw.write(String.format("Entity value -> %s was not translated by GP\n", entityVal));
-          }
-        }
-        entityKey = null;
-        // get synonym
-        JsonArray synonymsVal = (JsonArray) entityValObj.get("synonyms");
-        if (synonymsVal.size() > 0) {
-          Set<String> synSet = new HashSet<String>(valuesEx.size());
-          List<Integer> removeSyn = new ArrayList<Integer>();
-          JsonArray entitySet = new JsonArray(synonymsVal.size());
-          int j = 0;
-          for (JsonElement synonymText : synonymsVal) {
-            String synonymVal = synonymText.getAsString();
-            entityKey = entityValue + ":" + synonymVal;
-            if (entityMap.containsKey(entityKey)) {
-              String key = entityMap.get(entityKey);
-              if (!key.isEmpty()) {
-                String newKey = key.toLowerCase();
-                if (!synSet.contains(newKey)) {
-                  synSet.add(newKey);
-                  entitySet.add(key);
-                } else {
-                  removeSyn.add(j);
-                }
-              } else {
-                bw.write(String.format("Entity Synonym -> %s was not translated by GP\n", synonymVal));
-              }
-            }
-            if (entitySet.size() > 0) {
-              entityValObj.add("synonyms", entitySet);
-            }
-            entityKey = null;
-            j++;
-          }
-          if (removeSyn.size() > 0) {
-            for (int k = removeSyn.size() - 1; k >= 0; k--) {
-              synonymsVal.remove(removeSyn.get(k));
-            }
-          }
-        } else {
-          entityValObj.remove("synonyms");
-        }
-        i++;
-      }
-      // Remove duplicate JSON elements
-      for (int k = removeElements.size() - 1; k >= 0; k--) {
-        valuesEx.remove(valuesEx.get(removeElements.get(k)));
-      }
-      removeElements.clear();
+  private String outputFile(String targetLanguage) {
+    String path = getOutputFile();
+    if (!languageSuffix) {
+      return path;
     }
-    System.out.println("    Entities Updated");
-    bw.write("\n");
-    bw.flush();
-  }
-
-  /***
-   * Parse Dialogs in source workspace and update it with translated content
-   * 
-   * @param jsonResponseObject
-   * @param dialogMap
-   * @param bw
-   * @param entitiesBundle
-   * @return
-   * @throws IOException
-   */
-  private void updateDialogs(JsonObject jsonResponseObject, Map<String, String> dialogMap, BufferedWriter bw,
-      Map<String, String> entitiesBundle) throws IOException {
-    // Fetch Dialog Nodes
-    System.out.println("\n");
-    System.out.println("*** Updating Dialog on WCS with Translatable Contents ***");
-    JsonArray dialogNodes = jsonResponseObject.getAsJsonArray("dialog_nodes");
-    for (JsonElement dialogArray : dialogNodes) {
-      JsonObject dialogNodeObj = dialogArray.getAsJsonObject();
-      JsonElement element = dialogNodeObj.get("output");
-      if (!(element instanceof JsonNull)) {
-        JsonObject outputEx = (JsonObject) element;
-        JsonElement valuesTextEx = (JsonElement) outputEx.get("text");
-        if (!(valuesTextEx instanceof JsonNull)) {
-          if (valuesTextEx != null) {
-            // text is String, Json Array or Json Object
-            if (valuesTextEx.isJsonPrimitive()) {
-              if (valuesTextEx.getAsJsonPrimitive().isString()) {
-                String textVal = valuesTextEx.getAsString();
-                if (textVal != null && textVal.length() > 0) {
-                  int textHashCode = textVal.hashCode();
-                  String result = Integer.toHexString(textHashCode);
-                  String append = null;
-                  if (textVal.length() < 5) {
-                    append = textVal.substring(0, textVal.length());
-                  } else {
-                    append = textVal.substring(0, 4);
-                  }
-                  result = append + "_" + result;
-                  if (dialogMap.containsKey(result)) {
-                    String keyTobeInserted = dialogMap.get(result);
-                    if (!keyTobeInserted.isEmpty()) {
-                      outputEx.addProperty("text", keyTobeInserted);
-                    } else {
-                      bw.write(String.format("Dialog Text -> %s was not translated by GP\n", textVal));
-                    }
-                  }
-                }
-              }
-              // else -> text will always be present as a String. ignore
-            } else {
-              if (valuesTextEx.isJsonArray()) {
-                // Text is Json Array
-                JsonArray jsonNodes = valuesTextEx.getAsJsonArray();
-                JsonArray textArrayToBeReplaced = new JsonArray();
-                for (JsonElement jsonArray : jsonNodes) {
-                  String jsonText = jsonArray.getAsString();
-                  if (jsonText != null && jsonText.length() > 0) {
-                    int jsonHashCode = jsonText.hashCode();
-                    String result = Integer.toHexString(jsonHashCode);
-                    String append = null;
-                    if (jsonText.length() < 5) {
-                      append = jsonText.substring(0, jsonText.length());
-                    } else {
-                      append = jsonText.substring(0, 4);
-                    }
-                    result = append + "_" + result;
-                    if (dialogMap.containsKey(result)) {
-                      String keyTobeInserted = dialogMap.get(result);
-                      if (!keyTobeInserted.isEmpty()) {
-                        textArrayToBeReplaced.add(keyTobeInserted);
-                        outputEx.add("text", textArrayToBeReplaced);
-                      } else {
-                        bw.write(String.format("Dialog Text -> %s was not translated by GP\n", jsonText));
-                      }
-                    }
-                  }
-                }
-              } else {
-                if (valuesTextEx.isJsonObject()) {
-                  // Text contains values as JsonObject
-                  JsonObject jsonTextObj = (JsonObject) valuesTextEx;
-                  JsonArray valuesNodes = jsonTextObj.getAsJsonArray("values");
-                  JsonArray textArrayToBeReplaced = new JsonArray();
-                  for (JsonElement valuesArray : valuesNodes) {
-                    String valuesText = valuesArray.getAsString();
-                    if (valuesText != null && valuesText.length() > 0) {
-                      int valuesHashCode = valuesText.hashCode();
-                      String result = Integer.toHexString(valuesHashCode);
-                      String append = null;
-                      if (valuesText.length() < 5) {
-                        append = valuesText.substring(0, valuesText.length());
-                      } else {
-                        append = valuesText.substring(0, 4);
-                      }
-                      result = append + "_" + result;
-                      if (dialogMap.containsKey(result)) {
-                        String keyTobeInserted = dialogMap.get(result);
-                        if (!keyTobeInserted.isEmpty()) {
-                          textArrayToBeReplaced.add(keyTobeInserted);
-                        } else {
-                          bw.write(String.format("Dialog Text -> %s was not translated by GP\n", valuesText));
-                        }
-                      }
-                    }
-                  }
-                  jsonTextObj.remove("values");
-                  jsonTextObj.add("values", textArrayToBeReplaced);
-                }
-              }
-            }
-          }
-        }
-      }
-      JsonElement condition = dialogNodeObj.get("conditions");
-      if (!(condition instanceof JsonNull)) {
-        String getCondition = condition.getAsString();
-        if (getCondition.contains("@") && getCondition.contains(":")) {
-          String[] getStrings = getCondition.split(" ");
-          for (int i = 0; i < getStrings.length; i++) {
-            if (getStrings[i].contains("@") && getStrings[i].contains(":")) {
-              String getEntity = getStrings[i].substring(getStrings[i].indexOf('@') + 1, getStrings[i].length());
-              getEntity = getEntity.replaceAll("[^a-zA-Z0-9:_]", "");
-              if (entitiesBundle.containsKey(getEntity)) {
-                String beforeColon = getStrings[i].substring(0, getStrings[i].indexOf(":"));
-                String keyTobeInserted = entitiesBundle.get(getEntity);
-                if (!keyTobeInserted.isEmpty()) {
-                  getStrings[i] = beforeColon + ":" + keyTobeInserted;
-                } else {
-                  bw.write(String.format("Dialog Condition -> %s was not translated by GP \n", getEntity));
-                }
-              } else {
-                bw.write(String.format("GP does not contain Entity Value -> %s \n", getEntity));
-              }
-            }
-          }
-          String str = String.join(" ", getStrings);
-          dialogNodeObj.addProperty("conditions", str);
-        }
-      }
+    int dot = path.lastIndexOf('.');
+    if (dot <= Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar))) {
+      return path + "_" + targetLanguage;
     }
-    System.out.println("    Dialog Nodes Updated");
-    bw.write("\n");
-    bw.flush();
+    return path.substring(0, dot) + "_" + targetLanguage + path.substring(dot);
   }
 
   /***
@@ -491,8 +337,13 @@ public class GP_To_WCS extends BaseUtility {
    * @param workspaceId
    * @param versionDate
    * @return jsonResponse
+   * @throws WCSWorkspaceException
    */
-  private JsonObject getConvWorkspace() {
+  private JsonObject getConvWorkspace() throws WCSWorkspaceException {
+    if (getInputFile() != null) {
+      return WCSUtils.readWorkspaceFile(getInputFile());
+    }
+
     // Get Watson Conv Creds
     String wcsCreds = getWCSCreds();
     // Get Params
@@ -516,38 +367,28 @@ public class GP_To_WCS extends BaseUtility {
    */
   private Map<String, String> checkExistingBundles(String intentsBundleName, String targetLanguage)
       throws ServiceException, WCSWorkspaceException {
-    Set<String> gpBundleIds = getGPClient().getBundleIds();
+    BundleCatalog catalog = getBundleCatalog();
     Map<String, String> resourceStrings = new HashMap<String, String>();
     Map<String, String> intentMap = new HashMap<String, String>();
-    if (gpBundleIds == null || gpBundleIds.size() == 0) {
+    if (catalog.isEmpty()) {
       return null;
     } else {
-      if (gpBundleIds.size() > 0) {
-        // Parse Bundle Names
-        // Some bundle exist on GP. Parse them
-        Set<String> bundleNames = new HashSet<String>();
-        boolean checkLang = true;
-        for (String str : gpBundleIds) {
-          if (str.equals(intentsBundleName) || str.contains(intentsBundleName)) {
-            bundleNames.add(str);
-          }
-        }
-        if (bundleNames.size() > 0) {
-          for (String gpBundle : bundleNames) {
-            Set<String> gpTargetLanguage = getGPClient().getBundleInfo(gpBundle).getTargetLanguages();
-            if (gpTargetLanguage.contains(targetLanguage)) {
-              resourceStrings = getGPClient().getResourceStrings(gpBundle, targetLanguage, false);
-            } else {
-              System.out.println("Target language does not exist on GP for intents bundle");
-              checkLang = false;
-            }
-            intentMap.putAll(resourceStrings);
-            resourceStrings.clear();
-          }
-        }
-        if (checkLang == false) {
-          throw new WCSWorkspaceException("\n Target language should exist on GP for intents, entities and dialogs");
+      // Look up the bundles of this section
+      Set<String> bundleNames = catalog.getBundles(intentsBundleName);
+      boolean checkLang = true;
+      for (String gpBundle : bundleNames) {
+        Set<String> gpTargetLanguage = getGPClient().getBundleInfo(gpBundle).getTargetLanguages();
+        if (gpTargetLanguage.contains(targetLanguage)) {
+          resourceStrings = getGPClient().getResourceStrings(gpBundle, targetLanguage, false);
+        } else {
+          System.out.println("Target language does not exist on GP for intents bundle");
+          checkLang = false;
         }
+        intentMap.putAll(resourceStrings);
+        resourceStrings.clear();
+      }
+      if (checkLang == false) {
+        throw new WCSWorkspaceException("\n Target language should exist on GP for intents, entities and dialogs");
       }
     }
     return intentMap;
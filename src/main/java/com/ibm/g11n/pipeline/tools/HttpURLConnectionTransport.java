@@ -0,0 +1,140 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/***
+ * {@link WCSTransport} on top of HttpURLConnection. Connections are kept alive
+ * and pooled by the JDK as long as every response body is read and closed.
+ * Downloads ask for gzip. Request bodies are streamed in chunks and optionally
+ * gzipped.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class HttpURLConnectionTransport implements WCSTransport {
+
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final boolean gzipRequests;
+  private final int chunkSize;
+
+  /***
+   * @param connectTimeout
+   *          in milliseconds
+   * @param readTimeout
+   *          in milliseconds
+   * @param gzipRequests
+   *          send request bodies with Content-Encoding gzip
+   * @param chunkSize
+   *          size in bytes of the chunks request bodies are sent in
+   */
+  HttpURLConnectionTransport(int connectTimeout, int readTimeout, boolean gzipRequests, int chunkSize) {
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.gzipRequests = gzipRequests;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public Response get(String url, String authorizationHeader) throws IOException {
+    HttpURLConnection conn = open(url, "GET", authorizationHeader);
+    return new ConnectionResponse(conn);
+  }
+
+  @Override
+  public Response post(String url, String authorizationHeader, RequestBody jsonBody) throws IOException {
+    HttpURLConnection conn = open(url, "POST", authorizationHeader);
+    conn.setDoOutput(true);
+    conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+    // Without a streaming mode HttpURLConnection buffers the whole body
+    conn.setChunkedStreamingMode(chunkSize);
+    if (gzipRequests) {
+      conn.setRequestProperty("Content-Encoding", "gzip");
+    }
+    try (OutputStream os = gzipRequests ? new GZIPOutputStream(conn.getOutputStream(), chunkSize)
+        : conn.getOutputStream()) {
+      jsonBody.writeTo(os);
+    }
+    return new ConnectionResponse(conn);
+  }
+
+  private HttpURLConnection open(String url, String method, String authorizationHeader) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+    conn.setRequestMethod(method);
+    conn.setReadTimeout(readTimeout);
+    conn.setConnectTimeout(connectTimeout);
+    conn.setDoInput(true);
+    conn.setRequestProperty("Authorization", authorizationHeader);
+    conn.setRequestProperty("Accept-Encoding", "gzip");
+    conn.setRequestProperty("Connection", "keep-alive");
+    return conn;
+  }
+
+  private static final class ConnectionResponse implements Response {
+    private final HttpURLConnection conn;
+    private final int code;
+    private InputStream body;
+
+    ConnectionResponse(HttpURLConnection conn) throws IOException {
+      this.conn = conn;
+      this.code = conn.getResponseCode();
+    }
+
+    @Override
+    public int getCode() {
+      return code;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      if (body == null) {
+        InputStream in = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        if (in == null) {
+          in = new ByteArrayInputStream(new byte[0]);
+        }
+        if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+          in = new GZIPInputStream(in);
+        }
+        body = in;
+      }
+      return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // Drain what is left so the JDK can return the connection to its pool
+      InputStream in = getBody();
+      byte[] buffer = new byte[8192];
+      try {
+        while (in.read(buffer) != -1) {
+          // discard
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Runs WCS_To_GP then GP_To_WCS end to end against a local WCS server and an
+ * in-memory Globalization Pipeline, to measure throughput and remote calls
+ * for any workspace size without the services. Latency, errors and throttling
+ * can be injected into both stand-ins.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@Parameters(commandDescription = "Run WCS_To_GP and GP_To_WCS against local WCS and GP stand-ins")
+final class LocalRoundTrip implements Command {
+
+  private static final String SOURCE_WORKSPACE = "source";
+  private static final String VERSION_DATE = "2017-05-26";
+  private static final String FAILED = "FAILED";
+
+  @Parameter(names = { "--workspaceFile" }, description = "Workspace JSON file, a workspace is generated if not given")
+  private String workspaceFile;
+
+  @Parameter(names = { "--intents" }, description = "Number of intents of the generated workspace")
+  private int intents = 1000;
+
+  @Parameter(names = { "--entities" }, description = "Number of entities of the generated workspace")
+  private int entities = 500;
+
+  @Parameter(names = { "--dialogNodes" }, description = "Number of dialog nodes of the generated workspace")
+  private int dialogNodes = 2000;
+
+  @Parameter(names = { "--seed" }, description = "Random seed of the generated workspace and of injected faults")
+  private long seed = 42;
+
+  @Parameter(names = { "-t", "--targetLanguage" }, description = "Target languages, separated by comma")
+  private String targetLanguage = "fr";
+
+  @Parameter(names = { "--runs" }, description = "Number of round trips, later runs find the bundles on GP")
+  private int runs = 1;
+
+  @Parameter(names = { "--wcsLatency" }, description = "Latency in milliseconds of every WCS call")
+  private long wcsLatency;
+
+  @Parameter(names = { "--gpLatency" }, description = "Latency in milliseconds of every GP call")
+  private long gpLatency;
+
+  @Parameter(names = {
+      "--jitter" }, description = "Random latency in milliseconds added to every call, up to this value")
+  private long jitter;
+
+  @Parameter(names = { "--errorRate" }, description = "Share of calls failing with a server error, 0 to 1")
+  private double errorRate;
+
+  @Parameter(names = { "--throttleRate" }, description = "Share of calls rejected as throttled, 0 to 1")
+  private double throttleRate;
+
+  @Parameter(names = { "--wcsToGpOptions" }, description = "Extra WCS_To_GP options, separated by spaces")
+  private String wcsToGpOptions;
+
+  @Parameter(names = { "--gpToWcsOptions" }, description = "Extra GP_To_WCS options, separated by spaces")
+  private String gpToWcsOptions;
+
+  /***
+   * Start the stand-ins and run the round trips
+   *
+   * @throws Exception
+   */
+  @Override
+  public void execute() throws Exception {
+    JsonObject workspace = loadWorkspace();
+    TranslatableContent content = WorkspaceExtractor.extract(workspace);
+    int units = 0;
+    for (Section section : Section.values()) {
+      units += content.getUnits(section).size();
+    }
+
+    File credentials = File.createTempFile("local-credentials", ".json");
+    try (Writer writer = Files.newBufferedWriter(credentials.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("{\"username\":\"local\",\"password\":\"local\"}");
+    }
+    LocalServiceClient gp = new LocalServiceClient(
+        new FaultInjector(gpLatency, jitter, errorRate, throttleRate, seed + 1));
+    try (LocalWCSServer wcs = new LocalWCSServer(
+        new FaultInjector(wcsLatency, jitter, errorRate, throttleRate, seed))) {
+      wcs.putWorkspace(SOURCE_WORKSPACE, workspace);
+      System.out.println("Local WCS API at " + wcs.getApiUrl() + ", " + units + " translatable units");
+
+      int failed = 0;
+      for (int run = 1; run <= runs; run++) {
+        System.out.println("\n*** Round trip " + run + " of " + runs + " ***");
+        String wcsToGp = runCommand(new WCS_To_GP(), wcsToGpOptions, credentials, wcs, gp, units);
+        String gpToWcs = runCommand(new GP_To_WCS(), gpToWcsOptions, credentials, wcs, gp, units);
+        failed += (wcsToGp.startsWith(FAILED) ? 1 : 0) + (gpToWcs.startsWith(FAILED) ? 1 : 0);
+        System.out.println("\n** Round trip " + run + ": WCS_To_GP " + wcsToGp + ", GP_To_WCS " + gpToWcs + " **");
+      }
+
+      System.out.println("\n** Commands failed: " + failed + " of " + runs * 2 + " **");
+
+      System.out.println("\n** Local WCS calls: " + wcs.getFaults() + " **");
+      for (Entry<String, Long> entry : wcs.getCallCounts().entrySet()) {
+        System.out.println("   " + entry.getKey() + " -> " + entry.getValue());
+      }
+      System.out.println("** Local GP calls: " + gp.getFaults() + " **");
+      System.out.println("** Local WCS workspaces: " + wcs.getWorkspaces().size() + " **");
+    } finally {
+      credentials.delete();
+    }
+  }
+
+  private JsonObject loadWorkspace() throws IOException {
+    if (workspaceFile == null) {
+      return new WorkspaceGenerator(seed, intents, entities, dialogNodes).generate();
+    }
+    try (InputStreamReader reader = new InputStreamReader(Files.newInputStream(new File(workspaceFile).toPath()),
+        StandardCharsets.UTF_8)) {
+      return new JsonParser().parse(reader).getAsJsonObject();
+    }
+  }
+
+  /***
+   * Run one utility against the stand-ins
+   *
+   * @param utility
+   * @param options
+   *          extra command line options
+   * @param credentials
+   * @param wcs
+   * @param gp
+   * @param units
+   *          translatable units of the workspace
+   * @return elapsed time and throughput, or the failure. A failed command has
+   *         no throughput
+   */
+  private String runCommand(BaseUtility utility, String options, File credentials, LocalWCSServer wcs,
+      LocalServiceClient gp, int units) {
+    List<String> args = new ArrayList<String>(Arrays.asList("-s", SOURCE_WORKSPACE, "-v", VERSION_DATE, "-j",
+        credentials.getPath(), "-g", credentials.getPath(), "-t", targetLanguage, "--wcsUrl", wcs.getApiUrl()));
+    if (options != null && !options.trim().isEmpty()) {
+      args.addAll(Arrays.asList(options.trim().split("\\s+")));
+    }
+    new JCommander(utility).parse(args.toArray(new String[args.size()]));
+    // A session per command, so that calls are counted per command
+    utility.setGPSession(new GPSession(gp));
+    long start = System.nanoTime();
+    try {
+      utility.run();
+    } catch (Exception e) {
+      // Injected faults are not retried by the utilities
+      e.printStackTrace();
+      return FAILED + " (" + e.getMessage() + ")";
+    }
+    long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return millis + " ms (" + units * 1000L / millis + " units/s)";
+  }
+}
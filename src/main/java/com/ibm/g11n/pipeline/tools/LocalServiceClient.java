@@ -0,0 +1,492 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.BundleDataChangeSet;
+import com.ibm.g11n.pipeline.client.BundleMetrics;
+import com.ibm.g11n.pipeline.client.LanguageMetrics;
+import com.ibm.g11n.pipeline.client.MTServiceBindingData;
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.NewTranslationConfigData;
+import com.ibm.g11n.pipeline.client.NewTranslationRequestData;
+import com.ibm.g11n.pipeline.client.NewUserData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryDataChangeSet;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.client.ServiceInfo;
+import com.ibm.g11n.pipeline.client.ServiceInstanceInfo;
+import com.ibm.g11n.pipeline.client.TranslationConfigData;
+import com.ibm.g11n.pipeline.client.TranslationRequestData;
+import com.ibm.g11n.pipeline.client.TranslationRequestDataChangeSet;
+import com.ibm.g11n.pipeline.client.UserData;
+import com.ibm.g11n.pipeline.client.UserDataChangeSet;
+
+/***
+ * In-memory stand-in for the Globalization Pipeline service, implementing the
+ * bundle operations used by the utilities: list, info, create, update,
+ * delete, upload, update and get resource strings. Target languages are
+ * served as pseudo translations of the source strings ("[fr] text"), so a
+ * full WCS_To_GP then GP_To_WCS round trip runs without the service. Other
+ * operations throw a ServiceException.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class LocalServiceClient extends ServiceClient {
+
+  private final FaultInjector faults;
+  private final ConcurrentHashMap<String, LocalBundle> bundles = new ConcurrentHashMap<String, LocalBundle>();
+
+  LocalServiceClient(FaultInjector faults) {
+    super(ServiceAccount.getInstance("http://localhost/translate/rest", "local", "local", "local"));
+    this.faults = faults;
+  }
+
+  FaultInjector getFaults() {
+    return faults;
+  }
+
+  /***
+   * Pseudo translation of a source string
+   *
+   * @param text
+   * @param language
+   * @return translated text
+   */
+  static String translate(String text, String language) {
+    return "[" + language + "] " + text;
+  }
+
+  @Override
+  public Set<String> getBundleIds() throws ServiceException {
+    inject("getBundleIds");
+    return new HashSet<String>(bundles.keySet());
+  }
+
+  @Override
+  public void createBundle(String bundleId, NewBundleData newBundleData) throws ServiceException {
+    inject("createBundle");
+    LocalBundle bundle = new LocalBundle(newBundleData.getSourceLanguage());
+    bundle.update(newBundleData.getTargetLanguages(), newBundleData.getMetadata(), newBundleData.getNotes(),
+        newBundleData.getPartner());
+    if (bundles.putIfAbsent(bundleId, bundle) != null) {
+      throw new ServiceException("Bundle " + bundleId + " already exists");
+    }
+  }
+
+  @Override
+  public BundleData getBundleInfo(String bundleId) throws ServiceException {
+    inject("getBundleInfo");
+    return bundle(bundleId).info();
+  }
+
+  @Override
+  public void updateBundle(String bundleId, BundleDataChangeSet changeSet) throws ServiceException {
+    inject("updateBundle");
+    bundle(bundleId).update(changeSet.getTargetLanguages(), changeSet.getMetadata(), changeSet.getNotes(),
+        changeSet.getPartner());
+  }
+
+  @Override
+  public void deleteBundle(String bundleId) throws ServiceException {
+    inject("deleteBundle");
+    if (bundles.remove(bundleId) == null) {
+      throw notFound(bundleId);
+    }
+  }
+
+  @Override
+  public Map<String, String> getResourceStrings(String bundleId, String language, boolean fallback)
+      throws ServiceException {
+    inject("getResourceStrings");
+    return bundle(bundleId).strings(language);
+  }
+
+  @Override
+  public void uploadResourceStrings(String bundleId, String language, Map<String, String> strings)
+      throws ServiceException {
+    inject("uploadResourceStrings");
+    bundle(bundleId).put(language, strings, true);
+  }
+
+  @Override
+  public void uploadResourceEntries(String bundleId, String language,
+      Map<String, NewResourceEntryData> resourceEntries) throws ServiceException {
+    inject("uploadResourceEntries");
+    Map<String, String> strings = new HashMap<String, String>(resourceEntries.size());
+    for (Entry<String, NewResourceEntryData> entry : resourceEntries.entrySet()) {
+      strings.put(entry.getKey(), entry.getValue().getValue());
+    }
+    bundle(bundleId).put(language, strings, true);
+  }
+
+  @Override
+  public void updateResourceStrings(String bundleId, String language, Map<String, String> strings, boolean resync)
+      throws ServiceException {
+    inject("updateResourceStrings");
+    bundle(bundleId).put(language, strings, false);
+  }
+
+  @Override
+  public ServiceInfo getServiceInfo() throws ServiceException {
+    throw unsupported("getServiceInfo");
+  }
+
+  @Override
+  public ServiceInstanceInfo getServiceInstanceInfo() throws ServiceException {
+    throw unsupported("getServiceInstanceInfo");
+  }
+
+  @Override
+  public BundleMetrics getBundleMetrics(String bundleId) throws ServiceException {
+    throw unsupported("getBundleMetrics");
+  }
+
+  @Override
+  public Map<String, ResourceEntryData> getResourceEntries(String bundleId, String language) throws ServiceException {
+    throw unsupported("getResourceEntries");
+  }
+
+  @Override
+  public LanguageMetrics getLanguageMetrics(String bundleId, String language) throws ServiceException {
+    throw unsupported("getLanguageMetrics");
+  }
+
+  @Override
+  public void updateResourceEntries(String bundleId, String language, Map<String,
+      ResourceEntryDataChangeSet> resourceEntries, boolean resync) throws ServiceException {
+    throw unsupported("updateResourceEntries");
+  }
+
+  @Override
+  public ResourceEntryData getResourceEntry(String bundleId, String language, String resourceKey)
+      throws ServiceException {
+    throw unsupported("getResourceEntry");
+  }
+
+  @Override
+  public void updateResourceEntry(String bundleId, String language, String resourceKey,
+      ResourceEntryDataChangeSet changeSet) throws ServiceException {
+    throw unsupported("updateResourceEntry");
+  }
+
+  @Override
+  public Map<String, UserData> getUsers() throws ServiceException {
+    throw unsupported("getUsers");
+  }
+
+  @Override
+  public UserData createUser(NewUserData newUserData) throws ServiceException {
+    throw unsupported("createUser");
+  }
+
+  @Override
+  public UserData getUser(String userId) throws ServiceException {
+    throw unsupported("getUser");
+  }
+
+  @Override
+  public UserData updateUser(String userId, UserDataChangeSet changeSet, boolean resetPassword)
+      throws ServiceException {
+    throw unsupported("updateUser");
+  }
+
+  @Override
+  public void deleteUser(String userId) throws ServiceException {
+    throw unsupported("deleteUser");
+  }
+
+  @Override
+  public Map<String, MTServiceBindingData> getAllMTServiceBindings() throws ServiceException {
+    throw unsupported("getAllMTServiceBindings");
+  }
+
+  @Override
+  public Map<String, Map<String, Set<String>>> getAvailableMTLanguages() throws ServiceException {
+    throw unsupported("getAvailableMTLanguages");
+  }
+
+  @Override
+  public MTServiceBindingData getMTServiceBinding(String mtServiceBindingId) throws ServiceException {
+    throw unsupported("getMTServiceBinding");
+  }
+
+  @Override
+  public Map<String, Map<String, NewTranslationConfigData>> getAllTranslationConfigs() throws ServiceException {
+    throw unsupported("getAllTranslationConfigs");
+  }
+
+  @Override
+  public Map<String, Set<String>> getConfiguredMTLanguages() throws ServiceException {
+    throw unsupported("getConfiguredMTLanguages");
+  }
+
+  @Override
+  public void putTranslationConfig(String sourceLanguage, String targetLanguage, NewTranslationConfigData configData)
+      throws ServiceException {
+    throw unsupported("putTranslationConfig");
+  }
+
+  @Override
+  public TranslationConfigData getTranslationConfig(String sourceLanguage, String targetLanguage)
+      throws ServiceException {
+    throw unsupported("getTranslationConfig");
+  }
+
+  @Override
+  public void deleteTranslationConfig(String sourceLanguage, String targetLanguage) throws ServiceException {
+    throw unsupported("deleteTranslationConfig");
+  }
+
+  @Override
+  public Map<String, TranslationRequestData> getTranslationRequests() throws ServiceException {
+    throw unsupported("getTranslationRequests");
+  }
+
+  @Override
+  public TranslationRequestData getTranslationRequest(String requestId) throws ServiceException {
+    throw unsupported("getTranslationRequest");
+  }
+
+  @Override
+  public TranslationRequestData createTranslationRequest(NewTranslationRequestData newTranslationRequestData)
+      throws ServiceException {
+    throw unsupported("createTranslationRequest");
+  }
+
+  @Override
+  public TranslationRequestData updateTranslationRequest(String requestId, TranslationRequestDataChangeSet changeSet)
+      throws ServiceException {
+    throw unsupported("updateTranslationRequest");
+  }
+
+  @Override
+  public void deleteTranslationRequest(String requestId) throws ServiceException {
+    throw unsupported("deleteTranslationRequest");
+  }
+
+  @Override
+  public BundleData getTRBundleInfo(String requestId, String bundleId) throws ServiceException {
+    throw unsupported("getTRBundleInfo");
+  }
+
+  @Override
+  public Map<String, ResourceEntryData> getTRResourceEntries(String requestId, String bundleId, String language)
+      throws ServiceException {
+    throw unsupported("getTRResourceEntries");
+  }
+
+  @Override
+  public ResourceEntryData getTRResourceEntry(String requestId, String bundleId, String language, String resourceKey)
+      throws ServiceException {
+    throw unsupported("getTRResourceEntry");
+  }
+
+  @Override
+  public void getXliffFromBundles(String sourceLanguage, String targetLanguage, Set<String> bundleIds,
+      OutputStream outputXliff) throws ServiceException, IOException {
+    throw unsupported("getXliffFromBundles");
+  }
+
+  @Override
+  public void updateBundlesWithXliff(InputStream inputXliff) throws ServiceException, IOException {
+    throw unsupported("updateBundlesWithXliff");
+  }
+
+  @Override
+  public void getXliffFromTranslationRequest(String requestId, String sourceLanguage, String targetLanguage,
+      OutputStream outputXliff) throws ServiceException, IOException {
+    throw unsupported("getXliffFromTranslationRequest");
+  }
+
+  private void inject(String operation) throws ServiceException {
+    FaultInjector.Fault fault;
+    try {
+      fault = faults.call();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException("Interrupted in " + operation, e);
+    }
+    if (fault == FaultInjector.Fault.ERROR) {
+      throw new ServiceException("Injected error in " + operation);
+    }
+    if (fault == FaultInjector.Fault.THROTTLE) {
+      throw new ServiceException("Too many requests (429) in " + operation);
+    }
+  }
+
+  private LocalBundle bundle(String bundleId) throws ServiceException {
+    LocalBundle bundle = bundles.get(bundleId);
+    if (bundle == null) {
+      throw notFound(bundleId);
+    }
+    return bundle;
+  }
+
+  private static ServiceException notFound(String bundleId) {
+    return new ServiceException("Bundle " + bundleId + " not found");
+  }
+
+  private static ServiceException unsupported(String operation) {
+    return new ServiceException(operation + " is not supported by the local Globalization Pipeline");
+  }
+
+  /***
+   * Bundle held in memory, guarded by its own lock
+   */
+  private static final class LocalBundle {
+    private final String sourceLanguage;
+    private final Map<String, String> strings = new TreeMap<String, String>();
+    private Set<String> targetLanguages = Collections.<String> emptySet();
+    private Map<String, String> metadata = Collections.<String, String> emptyMap();
+    private List<String> notes = Collections.<String> emptyList();
+    private String partner;
+    private Date updatedAt = new Date();
+
+    LocalBundle(String sourceLanguage) {
+      this.sourceLanguage = sourceLanguage;
+    }
+
+    synchronized void update(Set<String> newTargetLanguages, Map<String, String> newMetadata,
+        List<String> newNotes, String newPartner) {
+      if (newTargetLanguages != null) {
+        targetLanguages = new TreeSet<String>(newTargetLanguages);
+      }
+      if (newMetadata != null) {
+        metadata = new TreeMap<String, String>(newMetadata);
+      }
+      if (newNotes != null) {
+        notes = new ArrayList<String>(newNotes);
+      }
+      if (newPartner != null) {
+        partner = newPartner;
+      }
+      updatedAt = new Date();
+    }
+
+    /***
+     * Store source strings. A null value removes the key when merging
+     *
+     * @param language
+     * @param newStrings
+     * @param replace
+     *          replace all strings instead of merging
+     * @throws ServiceException
+     */
+    synchronized void put(String language, Map<String, String> newStrings, boolean replace)
+        throws ServiceException {
+      if (!sourceLanguage.equals(language)) {
+        throw new ServiceException("Only source language " + sourceLanguage + " strings can be stored");
+      }
+      if (replace) {
+        strings.clear();
+      }
+      for (Entry<String, String> entry : newStrings.entrySet()) {
+        if (entry.getValue() == null) {
+          strings.remove(entry.getKey());
+        } else {
+          strings.put(entry.getKey(), entry.getValue());
+        }
+      }
+      updatedAt = new Date();
+    }
+
+    synchronized Map<String, String> strings(String language) throws ServiceException {
+      if (sourceLanguage.equals(language)) {
+        return new HashMap<String, String>(strings);
+      }
+      if (!targetLanguages.contains(language)) {
+        throw new ServiceException("Language " + language + " is not a target language of the bundle");
+      }
+      Map<String, String> translated = new HashMap<String, String>(strings.size());
+      for (Entry<String, String> entry : strings.entrySet()) {
+        translated.put(entry.getKey(), translate(entry.getValue(), language));
+      }
+      return translated;
+    }
+
+    synchronized BundleData info() {
+      return new LocalBundleData(sourceLanguage, updatedAt, targetLanguages, notes, metadata, partner);
+    }
+  }
+
+  private static final class LocalBundleData extends BundleData {
+    private final Set<String> targetLanguages;
+    private final List<String> notes;
+    private final Map<String, String> metadata;
+    private final String partner;
+
+    LocalBundleData(String sourceLanguage, Date updatedAt, Set<String> targetLanguages, List<String> notes,
+        Map<String, String> metadata, String partner) {
+      super(sourceLanguage, false, "local", updatedAt);
+      this.targetLanguages = targetLanguages;
+      this.notes = notes;
+      this.metadata = metadata;
+      this.partner = partner;
+    }
+
+    @Override
+    public Set<String> getTargetLanguages() {
+      return targetLanguages;
+    }
+
+    @Override
+    public List<String> getNotes() {
+      return notes;
+    }
+
+    @Override
+    public Map<String, String> getMetadata() {
+      return metadata;
+    }
+
+    @Override
+    public String getPartner() {
+      return partner;
+    }
+
+    @Override
+    public String getSegmentSeparatorPattern() {
+      return null;
+    }
+
+    @Override
+    public String getNoTranslationPattern() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * In-process stand-in for the Watson Conversation workspace endpoints used by
+ * {@link WCSUtils}: export (GET workspaces/id?export=true), metadata (GET
+ * workspaces/id), create (POST workspaces) and update (POST workspaces/id).
+ * Workspaces are kept in memory as the JSON bytes they were posted with,
+ * along with the time they were last updated. The server listens on the
+ * loopback interface only and accepts any credentials.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class LocalWCSServer implements Closeable {
+
+  private static final String API_PATH = "/api/v1";
+  private static final String WORKSPACES_PATH = API_PATH + "/workspaces";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final FaultInjector faults;
+  private final ConcurrentHashMap<String, byte[]> workspaces = new ConcurrentHashMap<String, byte[]>();
+  private final ConcurrentHashMap<String, String> updated = new ConcurrentHashMap<String, String>();
+  private final ConcurrentHashMap<String, AtomicLong> callCounts = new ConcurrentHashMap<String, AtomicLong>();
+  private final AtomicInteger nextId = new AtomicInteger();
+
+  /***
+   * Start the server on a free port
+   *
+   * @param faults
+   * @throws IOException
+   */
+  LocalWCSServer(FaultInjector faults) throws IOException {
+    this.faults = faults;
+    // Response headers and bodies are written separately; without TCP_NODELAY
+    // every response waits for the delayed ACK of the client, about 40 ms
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "local-wcs-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    server.setExecutor(executor);
+    server.createContext(WORKSPACES_PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          serve(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  /***
+   * Base URL of the API, to be passed to WCSUtils.setApiUrl or --wcsUrl
+   *
+   * @return apiUrl
+   */
+  String getApiUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + API_PATH;
+  }
+
+  void putWorkspace(String workspaceId, JsonObject workspace) {
+    store(workspaceId, workspace.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /***
+   * Workspace as last posted, null if unknown
+   *
+   * @param workspaceId
+   * @return workspace JSON
+   */
+  byte[] getWorkspace(String workspaceId) {
+    return workspaces.get(workspaceId);
+  }
+
+  /***
+   * All workspaces by id
+   *
+   * @return workspaces
+   */
+  Map<String, byte[]> getWorkspaces() {
+    return new TreeMap<String, byte[]>(workspaces);
+  }
+
+  /***
+   * Number of requests served per operation
+   *
+   * @return callCounts
+   */
+  Map<String, Long> getCallCounts() {
+    Map<String, Long> counts = new TreeMap<String, Long>();
+    for (Entry<String, AtomicLong> entry : callCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  FaultInjector getFaults() {
+    return faults;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    String method = exchange.getRequestMethod();
+    String path = exchange.getRequestURI().getPath();
+    String workspaceId = path.length() > WORKSPACES_PATH.length() + 1
+        ? path.substring(WORKSPACES_PATH.length() + 1) : null;
+    String operation;
+    if ("GET".equals(method) && workspaceId != null) {
+      String query = exchange.getRequestURI().getQuery();
+      operation = query != null && query.contains("export=true") ? "export" : "metadata";
+    } else if ("POST".equals(method)) {
+      operation = workspaceId == null ? "create" : "update";
+    } else {
+      count(method + " " + path);
+      send(exchange, 405, error("Method not allowed", 405));
+      return;
+    }
+    count(operation);
+
+    // Read the request body before injecting faults, as the real service does
+    byte[] body = "GET".equals(method) ? null : readBody(exchange);
+    FaultInjector.Fault fault;
+    try {
+      fault = faults.call();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    if (fault == FaultInjector.Fault.ERROR) {
+      send(exchange, 500, error("Injected error", 500));
+      return;
+    }
+    if (fault == FaultInjector.Fault.THROTTLE) {
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      send(exchange, 429, error("Rate limit exceeded", 429));
+      return;
+    }
+
+    if (operation.equals("export")) {
+      byte[] workspace = workspaces.get(workspaceId);
+      if (workspace == null) {
+        send(exchange, 404, error("Resource not found", 404));
+      } else {
+        send(exchange, 200, workspace);
+      }
+      return;
+    }
+    if (operation.equals("metadata")) {
+      byte[] workspace = workspaces.get(workspaceId);
+      if (workspace == null) {
+        send(exchange, 404, error("Resource not found", 404));
+      } else {
+        send(exchange, 200, summary(workspaceId, workspace, updated.get(workspaceId)));
+      }
+      return;
+    }
+    if (operation.equals("update") && !workspaces.containsKey(workspaceId)) {
+      send(exchange, 404, error("Resource not found", 404));
+      return;
+    }
+    int code = 200;
+    if (workspaceId == null) {
+      workspaceId = "local-" + nextId.incrementAndGet();
+      code = 201;
+    }
+    byte[] summary;
+    try {
+      summary = summary(workspaceId, body, Instant.now().toString());
+    } catch (IOException | IllegalStateException e) {
+      send(exchange, 400, error("Invalid workspace JSON: " + e.getMessage(), 400));
+      return;
+    }
+    store(workspaceId, body);
+    send(exchange, code, summary);
+  }
+
+  private void store(String workspaceId, byte[] workspace) {
+    workspaces.put(workspaceId, workspace);
+    updated.put(workspaceId, Instant.now().toString());
+  }
+
+  private void count(String operation) {
+    AtomicLong counter = callCounts.get(operation);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = callCounts.putIfAbsent(operation, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    counter.incrementAndGet();
+  }
+
+  private static byte[] readBody(HttpExchange exchange) throws IOException {
+    InputStream in = exchange.getRequestBody();
+    if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      in = new GZIPInputStream(in);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(code, 0);
+      try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+        out.write(body);
+      }
+    } else {
+      exchange.sendResponseHeaders(code, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+
+  private static byte[] error(String message, int code) {
+    JsonObject error = new JsonObject();
+    error.addProperty("error", message);
+    error.addProperty("code", code);
+    return error.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  // Top level fields of the posted workspace, the way WCS answers, including
+  // non string fields such as learning_opt_out
+  private static byte[] summary(String workspaceId, byte[] workspace, String updatedAt) throws IOException {
+    JsonObject summary = new JsonObject();
+    JsonReader reader = new JsonReader(
+        new InputStreamReader(new ByteArrayInputStream(workspace), StandardCharsets.UTF_8));
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ((name.equals("name") || name.equals("language") || name.equals("description"))
+          && reader.peek() == JsonToken.STRING) {
+        summary.addProperty(name, reader.nextString());
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    summary.addProperty("workspace_id", workspaceId);
+    summary.addProperty("learning_opt_out", false);
+    summary.addProperty("updated", updatedAt);
+    summary.addProperty("status", "Available");
+    return summary.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/***
+ * Transport recording on {@link RunMetrics} the latency of every WCS call and
+ * the bytes exchanged. A call lasts until its response is closed, so the time
+ * spent reading a streamed body is included.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class MeteredTransport implements WCSTransport {
+
+  private final WCSTransport delegate;
+  private final RunMetrics metrics;
+
+  MeteredTransport(WCSTransport delegate, RunMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Response get(String url, String authorizationHeader) throws IOException {
+    String operation = url.contains("export=true") ? "getWorkspace" : "getWorkspaceMetadata";
+    long start = System.nanoTime();
+    Response response;
+    try {
+      response = delegate.get(url, authorizationHeader);
+    } catch (IOException | RuntimeException e) {
+      metrics.observe("wcs", operation, System.nanoTime() - start);
+      throw e;
+    }
+    return new MeteredResponse(response, operation, start);
+  }
+
+  @Override
+  public Response post(String url, String authorizationHeader, final RequestBody jsonBody) throws IOException {
+    // Workspaces are created on /workspaces and updated on /workspaces/{id}
+    String operation = url.contains("/workspaces?") ? "createWorkspace" : "updateWorkspace";
+    RequestBody body = new RequestBody() {
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try {
+          jsonBody.writeTo(counting);
+        } finally {
+          metrics.addBytes("sent", counting.count);
+        }
+      }
+    };
+    long start = System.nanoTime();
+    Response response;
+    try {
+      response = delegate.post(url, authorizationHeader, body);
+    } catch (IOException | RuntimeException e) {
+      metrics.observe("wcs", operation, System.nanoTime() - start);
+      throw e;
+    }
+    return new MeteredResponse(response, operation, start);
+  }
+
+  private final class MeteredResponse implements Response {
+    private final Response response;
+    private final String operation;
+    private final long start;
+    private CountingInputStream body;
+    private boolean closed;
+
+    MeteredResponse(Response response, String operation, long start) {
+      this.response = response;
+      this.operation = operation;
+      this.start = start;
+    }
+
+    @Override
+    public int getCode() {
+      return response.getCode();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      if (body == null) {
+        body = new CountingInputStream(response.getBody());
+      }
+      return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        response.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          metrics.observe("wcs", operation, System.nanoTime() - start);
+          if (body != null) {
+            metrics.addBytes("received", body.count);
+          }
+        }
+      }
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
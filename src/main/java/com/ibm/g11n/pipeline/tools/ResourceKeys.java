@@ -0,0 +1,244 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.Collection;
+
+/***
+ * Builds the resource keys of intent examples and dialog texts. A key is the
+ * first 4 characters of the text, '_' and a hash of the text:
+ * <ul>
+ * <li>scheme 1 (legacy): Integer.toHexString(String.hashCode())</li>
+ * <li>scheme 2: 64-bit MurmurHash3 of the UTF-8 text as 16 hex digits</li>
+ * </ul>
+ * Both schemes are told apart by the length of the hash, so GP_To_WCS can
+ * use the scheme the bundles were written with. Instances reuse their
+ * buffers and are not thread safe.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class ResourceKeys {
+
+  static final int LEGACY = 1;
+  static final int V2 = 2;
+
+  private static final int PREFIX_LENGTH = 4;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private final int scheme;
+  private byte[] bytes = new byte[256];
+  private final char[] key = new char[PREFIX_LENGTH + 1 + 16];
+
+  ResourceKeys(int scheme) {
+    if (scheme != LEGACY && scheme != V2) {
+      throw new IllegalArgumentException("Unknown key scheme " + scheme);
+    }
+    this.scheme = scheme;
+  }
+
+  int getScheme() {
+    return scheme;
+  }
+
+  /***
+   * Resource key of a text
+   * 
+   * @param text
+   *          non empty text
+   * @return key
+   */
+  String key(String text) {
+    int length = Math.min(text.length(), PREFIX_LENGTH);
+    text.getChars(0, length, key, 0);
+    key[length++] = '_';
+    if (scheme == LEGACY) {
+      int hash = text.hashCode();
+      // Integer.toHexString, without leading zeros
+      int digits = Math.max(1, 8 - Integer.numberOfLeadingZeros(hash) / 4);
+      for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+        key[length++] = HEX[(hash >>> shift) & 0xf];
+      }
+    } else {
+      long hash = murmur64(bytes, encode(text));
+      for (int shift = 60; shift >= 0; shift -= 4) {
+        key[length++] = HEX[(int) (hash >>> shift) & 0xf];
+      }
+    }
+    return new String(key, 0, length);
+  }
+
+  /***
+   * Key scheme used by existing resource keys. Keys holding a 16 digit hash
+   * are scheme 2, anything else is taken as legacy
+   * 
+   * @param keys
+   * @return scheme
+   */
+  static int detect(Collection<String> keys) {
+    for (String key : keys) {
+      if (isV2(key)) {
+        return V2;
+      }
+    }
+    return LEGACY;
+  }
+
+  private static boolean isV2(String key) {
+    int start = key.lastIndexOf('_') + 1;
+    if (start == 0) {
+      return false;
+    }
+    // Colliding texts get :N suffixes
+    int end = key.indexOf(':', start);
+    if (end < 0) {
+      end = key.length();
+    }
+    if (end - start != 16) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      char c = key.charAt(i);
+      if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /***
+   * UTF-8 encode text into the reused buffer, unpaired surrogates become '?'
+   * like String.getBytes does
+   * 
+   * @param text
+   * @return number of bytes
+   */
+  private int encode(String text) {
+    int max = text.length() * 3;
+    if (bytes.length < max) {
+      bytes = new byte[Math.max(max, bytes.length * 2)];
+    }
+    byte[] buf = bytes;
+    int n = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        buf[n++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[n++] = (byte) (0xc0 | (c >> 6));
+        buf[n++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, text.charAt(++i));
+        buf[n++] = (byte) (0xf0 | (cp >> 18));
+        buf[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+        buf[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+        buf[n++] = (byte) (0x80 | (cp & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        buf[n++] = '?';
+      } else {
+        buf[n++] = (byte) (0xe0 | (c >> 12));
+        buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buf[n++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return n;
+  }
+
+  /***
+   * First 64 bits of MurmurHash3 x64 128 with seed 0
+   * 
+   * @param data
+   * @param length
+   * @return hash
+   */
+  static long murmur64(byte[] data, int length) {
+    long h1 = 0;
+    long h2 = 0;
+    int blocks = length / 16;
+    for (int i = 0; i < blocks; i++) {
+      long k1 = getLong(data, i * 16);
+      long k2 = getLong(data, i * 16 + 8);
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    long k1 = 0;
+    long k2 = 0;
+    int tail = blocks * 16;
+    for (int i = length - tail - 1; i >= 8; i--) {
+      k2 ^= (data[tail + i] & 0xffL) << ((i - 8) * 8);
+    }
+    for (int i = Math.min(length - tail, 8) - 1; i >= 0; i--) {
+      k1 ^= (data[tail + i] & 0xffL) << (i * 8);
+    }
+    if (length - tail > 8) {
+      h2 ^= mixK2(k2);
+    }
+    if (length - tail > 0) {
+      h1 ^= mixK1(k1);
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    return h1;
+  }
+
+  private static long getLong(byte[] data, int offset) {
+    long value = 0;
+    for (int i = 7; i >= 0; i--) {
+      value = (value << 8) | (data[offset + i] & 0xffL);
+    }
+    return value;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
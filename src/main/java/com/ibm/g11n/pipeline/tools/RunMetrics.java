@@ -0,0 +1,507 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.gson.stream.JsonWriter;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Metrics of one command run: latency histograms of remote calls, bytes
+ * exchanged with WCS, strings extracted and sent per section and phase
+ * durations. Recording is lock free and safe from any thread. At the end of
+ * the run the metrics are written as a Prometheus textfile (for the node
+ * exporter textfile collector) and as a JSON summary.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class RunMetrics {
+
+  static final String PREFIX = "gp_wcs_";
+
+  static final String REMOTE_CALL_DURATION = "remote_call_duration_seconds";
+  static final String WCS_BYTES = "wcs_bytes_total";
+  static final String STRINGS = "strings_total";
+  static final String PHASE_DURATION = "phase_duration_seconds";
+  static final String JOBS = "jobs_total";
+  static final String SYNCS = "syncs_total";
+
+  // Upper bounds in seconds of the latency buckets
+  private static final double[] BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60 };
+
+  private static final String[][] HELP = {
+      { REMOTE_CALL_DURATION, "histogram", "Latency of remote calls to WCS and GP" },
+      { WCS_BYTES, "counter", "Uncompressed bytes sent to and received from the WCS API" },
+      { STRINGS, "counter", "Resource strings extracted, uploaded, deleted or fetched per section" },
+      { PHASE_DURATION, "gauge", "Time spent in each phase of the run, or of the last sync in watch mode" },
+      { JOBS, "counter", "Sync jobs submitted to the server, deduplicated, succeeded or failed" },
+      { SYNCS, "counter", "Syncs of watch mode, succeeded or failed" },
+      { "last_sync_duration_seconds", "gauge", "Duration of the last sync of watch mode" },
+      { "last_sync_success", "gauge", "1 if the last sync of watch mode succeeded, 0 otherwise" },
+      { "last_sync_timestamp_seconds", "gauge",
+          "Time the last sync of watch mode ended, in seconds since the epoch" },
+      { "run_duration_seconds", "gauge", "Duration of the run" },
+      { "run_success", "gauge", "1 if the run succeeded, 0 otherwise" },
+      { "run_end_timestamp_seconds", "gauge", "Time the run ended, in seconds since the epoch" } };
+
+  private final String command;
+  private final long startMillis = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+
+  // name{labels} -> value, sorted so that the series of a metric are together
+  private final ConcurrentSkipListMap<String, Histogram> histograms = new ConcurrentSkipListMap<String, Histogram>();
+  private final ConcurrentSkipListMap<String, AtomicLong> counters = new ConcurrentSkipListMap<String, AtomicLong>();
+  private final ConcurrentSkipListMap<String, AtomicLong> phases = new ConcurrentSkipListMap<String, AtomicLong>();
+
+  private volatile long durationNanos = -1;
+  private volatile boolean success;
+
+  // Last sync of watch mode, written once lastSyncEndMillis is set
+  private volatile long lastSyncNanos;
+  private volatile boolean lastSyncSuccess;
+  private volatile long lastSyncEndMillis;
+
+  RunMetrics(String command) {
+    this.command = command;
+  }
+
+  /***
+   * Record the latency of a remote call
+   *
+   * @param service
+   *          wcs or gp
+   * @param operation
+   * @param nanos
+   */
+  void observe(String service, String operation, long nanos) {
+    String series = series(REMOTE_CALL_DURATION, "service", service, "operation", operation);
+    Histogram histogram = histograms.get(series);
+    if (histogram == null) {
+      Histogram newHistogram = new Histogram();
+      histogram = histograms.putIfAbsent(series, newHistogram);
+      if (histogram == null) {
+        histogram = newHistogram;
+      }
+    }
+    histogram.observe(nanos);
+  }
+
+  /***
+   * Count bytes exchanged with WCS
+   *
+   * @param direction
+   *          sent or received
+   * @param bytes
+   */
+  void addBytes(String direction, long bytes) {
+    counter(counters, series(WCS_BYTES, "direction", direction)).addAndGet(bytes);
+  }
+
+  /***
+   * Count resource strings of a section
+   *
+   * @param section
+   *          intents, entities or dialogs
+   * @param action
+   *          extracted, uploaded, deleted, fetched or untranslated
+   * @param count
+   */
+  void addStrings(String section, String action, long count) {
+    counter(counters, series(STRINGS, "section", section, "action", action)).addAndGet(count);
+  }
+
+  /***
+   * Count a sync job of the server
+   *
+   * @param status
+   */
+  void addJob(String status) {
+    counter(counters, series(JOBS, "status", status)).incrementAndGet();
+  }
+
+  /***
+   * Count the units extracted from a workspace per section. Dialog
+   * conditions are rewritten in place and never sent to GP, they are not
+   * counted
+   *
+   * @param content
+   */
+  void addExtracted(TranslatableContent content) {
+    for (Section section : Section.values()) {
+      long extracted = 0;
+      for (TranslatableUnit unit : content.getUnits(section)) {
+        if (unit.getKind() != Kind.DIALOG_CONDITION) {
+          extracted++;
+        }
+      }
+      addStrings(label(section), "extracted", extracted);
+    }
+  }
+
+  /***
+   * Add time spent in a phase. A phase run several times adds up
+   *
+   * @param phase
+   * @param nanos
+   */
+  void addPhase(String phase, long nanos) {
+    counter(phases, series(PHASE_DURATION, "phase", phase)).addAndGet(nanos);
+  }
+
+  /***
+   * Start a sync of watch mode. Phase durations are reset, so that they
+   * describe the last sync rather than add up over the life of the process
+   */
+  void startSync() {
+    phases.clear();
+  }
+
+  /***
+   * End a sync of watch mode
+   *
+   * @param syncSucceeded
+   * @param nanos
+   *          duration of the sync
+   */
+  void finishSync(boolean syncSucceeded, long nanos) {
+    counter(counters, series(SYNCS, "status", syncSucceeded ? "succeeded" : "failed")).incrementAndGet();
+    lastSyncNanos = nanos;
+    lastSyncSuccess = syncSucceeded;
+    lastSyncEndMillis = System.currentTimeMillis();
+  }
+
+  /***
+   * End the run
+   *
+   * @param runSucceeded
+   */
+  void finish(boolean runSucceeded) {
+    success = runSucceeded;
+    durationNanos = System.nanoTime() - startNanos;
+  }
+
+  /***
+   * Section label of a bundle
+   *
+   * @param bundleId
+   * @return intents, entities, dialogs or other
+   */
+  static String sectionOf(String bundleId) {
+    String sectionBundle = BundleCatalog.sectionOf(bundleId);
+    for (Section section : Section.values()) {
+      if (sectionBundle.endsWith(section.bundleName(""))) {
+        return label(section);
+      }
+    }
+    return "other";
+  }
+
+  static String label(Section section) {
+    return section.name().toLowerCase(Locale.ROOT);
+  }
+
+  /***
+   * Print phase durations
+   */
+  void printPhases() {
+    if (phases.isEmpty()) {
+      return;
+    }
+    System.out.println("\n** Phases **");
+    for (Entry<String, AtomicLong> entry : phases.entrySet()) {
+      System.out.println("   " + labelValues(entry.getKey())[0] + " -> " + entry.getValue().get() / 1000000 + " ms");
+    }
+  }
+
+  /***
+   * Write the metrics in the Prometheus text format. The file is replaced
+   * atomically so that a collector never reads a partial file
+   *
+   * @param path
+   * @throws IOException
+   */
+  void writePrometheus(String path) throws IOException {
+    Path target = Paths.get(path);
+    Path temp = Paths.get(path + ".tmp");
+    try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      writePrometheus(out);
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /***
+   * Write the metrics in the Prometheus text format
+   *
+   * @param out
+   * @throws IOException
+   */
+  void writePrometheus(Writer out) throws IOException {
+    String commandLabel = "command=\"" + escape(command) + "\"";
+    String lastName = null;
+    for (Entry<String, Histogram> entry : histograms.entrySet()) {
+      lastName = header(out, entry.getKey(), lastName);
+      entry.getValue().write(out, entry.getKey(), commandLabel);
+    }
+    for (Entry<String, AtomicLong> entry : counters.entrySet()) {
+      lastName = header(out, entry.getKey(), lastName);
+      sample(out, entry.getKey(), "", commandLabel, Long.toString(entry.getValue().get()));
+    }
+    for (Entry<String, AtomicLong> entry : phases.entrySet()) {
+      lastName = header(out, entry.getKey(), lastName);
+      sample(out, entry.getKey(), "", commandLabel, seconds(entry.getValue().get()));
+    }
+    if (durationNanos >= 0) {
+      lastName = header(out, "run_duration_seconds", lastName);
+      sample(out, "run_duration_seconds", "", commandLabel, seconds(durationNanos));
+      lastName = header(out, "run_success", lastName);
+      sample(out, "run_success", "", commandLabel, success ? "1" : "0");
+      lastName = header(out, "run_end_timestamp_seconds", lastName);
+      sample(out, "run_end_timestamp_seconds", "", commandLabel,
+          Long.toString((startMillis + durationNanos / 1000000) / 1000));
+    }
+    if (lastSyncEndMillis > 0) {
+      lastName = header(out, "last_sync_duration_seconds", lastName);
+      sample(out, "last_sync_duration_seconds", "", commandLabel, seconds(lastSyncNanos));
+      lastName = header(out, "last_sync_success", lastName);
+      sample(out, "last_sync_success", "", commandLabel, lastSyncSuccess ? "1" : "0");
+      lastName = header(out, "last_sync_timestamp_seconds", lastName);
+      sample(out, "last_sync_timestamp_seconds", "", commandLabel, Long.toString(lastSyncEndMillis / 1000));
+    }
+  }
+
+  /***
+   * Write a JSON summary of the run
+   *
+   * @param path
+   * @throws IOException
+   */
+  void writeJson(String path) throws IOException {
+    SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+    try (JsonWriter out = new JsonWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
+      out.setIndent("  ");
+      out.beginObject();
+      out.name("command").value(command);
+      out.name("start").value(iso.format(new Date(startMillis)));
+      if (durationNanos >= 0) {
+        out.name("success").value(success);
+        out.name("durationSeconds").value(durationNanos / 1e9);
+      }
+      if (lastSyncEndMillis > 0) {
+        out.name("lastSync").beginObject();
+        out.name("success").value(lastSyncSuccess);
+        out.name("durationSeconds").value(lastSyncNanos / 1e9);
+        out.name("end").value(iso.format(new Date(lastSyncEndMillis)));
+        out.endObject();
+      }
+      out.name("phases").beginObject();
+      for (Entry<String, AtomicLong> entry : phases.entrySet()) {
+        out.name(labelValues(entry.getKey())[0]).value(entry.getValue().get() / 1e9);
+      }
+      out.endObject();
+      out.name("calls").beginObject();
+      for (Entry<String, Histogram> entry : histograms.entrySet()) {
+        String[] values = labelValues(entry.getKey());
+        out.name(values[0] + "." + values[1]);
+        entry.getValue().writeJson(out);
+      }
+      out.endObject();
+      out.name("wcsBytes").beginObject();
+      for (Entry<String, AtomicLong> entry : counters.entrySet()) {
+        if (name(entry.getKey()).equals(WCS_BYTES)) {
+          out.name(labelValues(entry.getKey())[0]).value(entry.getValue().get());
+        }
+      }
+      out.endObject();
+      out.name("strings").beginObject();
+      // strings_total series are sorted by section, then action
+      String section = null;
+      for (Entry<String, AtomicLong> entry : counters.entrySet()) {
+        if (name(entry.getKey()).equals(STRINGS)) {
+          String[] values = labelValues(entry.getKey());
+          if (!values[0].equals(section)) {
+            if (section != null) {
+              out.endObject();
+            }
+            section = values[0];
+            out.name(section).beginObject();
+          }
+          out.name(values[1]).value(entry.getValue().get());
+        }
+      }
+      if (section != null) {
+        out.endObject();
+      }
+      out.endObject();
+      out.endObject();
+    }
+  }
+
+  private static AtomicLong counter(ConcurrentSkipListMap<String, AtomicLong> map, String series) {
+    AtomicLong counter = map.get(series);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = map.putIfAbsent(series, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+
+  // name{label1="value1",label2="value2"}
+  private static String series(String name, String... labels) {
+    StringBuilder sb = new StringBuilder(name).append('{');
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+    }
+    return sb.append('}').toString();
+  }
+
+  private static String name(String series) {
+    int brace = series.indexOf('{');
+    return brace < 0 ? series : series.substring(0, brace);
+  }
+
+  // Values of the labels, in order
+  private static String[] labelValues(String series) {
+    String[] labels = series.substring(series.indexOf('{') + 1, series.length() - 1).split("\",");
+    String[] values = new String[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      String value = labels[i].substring(labels[i].indexOf('"') + 1);
+      values[i] = value.endsWith("\"") ? value.substring(0, value.length() - 1) : value;
+    }
+    return values;
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String seconds(long nanos) {
+    return Double.toString(nanos / 1e9);
+  }
+
+  private static String header(Writer out, String series, String lastName) throws IOException {
+    String name = name(series);
+    if (!name.equals(lastName)) {
+      for (String[] help : HELP) {
+        if (help[0].equals(name)) {
+          out.write("# HELP " + PREFIX + name + " " + help[2] + "\n");
+          out.write("# TYPE " + PREFIX + name + " " + help[1] + "\n");
+        }
+      }
+    }
+    return name;
+  }
+
+  // Write PREFIX + name + suffix {labels of the series, extra labels} value
+  private static void sample(Writer out, String series, String suffix, String extraLabels, String value)
+      throws IOException {
+    String labels = series.indexOf('{') < 0 ? "" : series.substring(series.indexOf('{') + 1, series.length() - 1);
+    out.write(PREFIX + name(series) + suffix + "{" + labels);
+    if (!extraLabels.isEmpty()) {
+      out.write(labels.isEmpty() ? extraLabels : "," + extraLabels);
+    }
+    out.write("} " + value + "\n");
+  }
+
+  /***
+   * Latency histogram with fixed buckets
+   */
+  private static final class Histogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void observe(long nanos) {
+      double seconds = nanos / 1e9;
+      int bucket = 0;
+      while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+        bucket++;
+      }
+      buckets.incrementAndGet(bucket);
+      count.incrementAndGet();
+      sumNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    void write(Writer out, String series, String commandLabel) throws IOException {
+      long cumulative = 0;
+      for (int i = 0; i <= BUCKETS.length; i++) {
+        cumulative += buckets.get(i);
+        String le = i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf";
+        sample(out, series, "_bucket", commandLabel + ",le=\"" + le + "\"", Long.toString(cumulative));
+      }
+      sample(out, series, "_sum", commandLabel, seconds(sumNanos.get()));
+      sample(out, series, "_count", commandLabel, Long.toString(count.get()));
+    }
+
+    void writeJson(JsonWriter out) throws IOException {
+      long calls = count.get();
+      out.beginObject();
+      out.name("count").value(calls);
+      out.name("sumSeconds").value(sumNanos.get() / 1e9);
+      out.name("maxSeconds").value(maxNanos.get() / 1e9);
+      if (calls > 0) {
+        out.name("p50Seconds").value(quantile(calls, 0.5));
+        out.name("p95Seconds").value(quantile(calls, 0.95));
+      }
+      out.endObject();
+    }
+
+    // Upper bound of the bucket holding the quantile, never more than the
+    // slowest call
+    private double quantile(long calls, double q) {
+      double max = maxNanos.get() / 1e9;
+      long rank = (long) Math.ceil(calls * q);
+      long cumulative = 0;
+      for (int i = 0; i < BUCKETS.length; i++) {
+        cumulative += buckets.get(i);
+        if (cumulative >= rank) {
+          return Math.min(BUCKETS[i], max);
+        }
+      }
+      return max;
+    }
+  }
+}
@@ -0,0 +1,507 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.BundleDataChangeSet;
+import com.ibm.g11n.pipeline.client.BundleMetrics;
+import com.ibm.g11n.pipeline.client.LanguageMetrics;
+import com.ibm.g11n.pipeline.client.MTServiceBindingData;
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.NewTranslationConfigData;
+import com.ibm.g11n.pipeline.client.NewTranslationRequestData;
+import com.ibm.g11n.pipeline.client.NewUserData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryDataChangeSet;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.client.ServiceInfo;
+import com.ibm.g11n.pipeline.client.ServiceInstanceInfo;
+import com.ibm.g11n.pipeline.client.TranslationConfigData;
+import com.ibm.g11n.pipeline.client.TranslationRequestData;
+import com.ibm.g11n.pipeline.client.TranslationRequestDataChangeSet;
+import com.ibm.g11n.pipeline.client.UserData;
+import com.ibm.g11n.pipeline.client.UserDataChangeSet;
+
+/***
+ * Globalization Pipeline client handed out by {@link GPSession}. Every call is
+ * counted and timed on the session and then passed to the underlying client,
+ * except bundle information which is served from the session cache.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class SessionServiceClient extends ServiceClient {
+
+  private final ServiceClient delegate;
+  private final GPSession session;
+
+  SessionServiceClient(ServiceClient delegate, GPSession session) {
+    super(delegate.getServiceAccount());
+    this.delegate = delegate;
+    this.session = session;
+  }
+
+  private long start(String operation) {
+    session.countCall(operation);
+    return System.nanoTime();
+  }
+
+  private void end(String operation, long start) {
+    session.recordCall(operation, start);
+  }
+
+  @Override
+  public ServiceInfo getServiceInfo() throws ServiceException {
+    long start = start("getServiceInfo");
+    try {
+      return delegate.getServiceInfo();
+    } finally {
+      end("getServiceInfo", start);
+    }
+  }
+
+  @Override
+  public ServiceInstanceInfo getServiceInstanceInfo() throws ServiceException {
+    long start = start("getServiceInstanceInfo");
+    try {
+      return delegate.getServiceInstanceInfo();
+    } finally {
+      end("getServiceInstanceInfo", start);
+    }
+  }
+
+  @Override
+  public Set<String> getBundleIds() throws ServiceException {
+    long start = start("getBundleIds");
+    try {
+      return delegate.getBundleIds();
+    } finally {
+      end("getBundleIds", start);
+    }
+  }
+
+  @Override
+  public void createBundle(String bundleId, NewBundleData newBundleData) throws ServiceException {
+    long start = start("createBundle");
+    try {
+      delegate.createBundle(bundleId, newBundleData);
+    } finally {
+      end("createBundle", start);
+    }
+    session.invalidateBundleInfo(bundleId);
+    session.bundleCreated(bundleId);
+  }
+
+  @Override
+  public BundleData getBundleInfo(String bundleId) throws ServiceException {
+    // counted by the session when the bundle is not cached
+    return session.getBundleInfo(bundleId, delegate);
+  }
+
+  @Override
+  public BundleMetrics getBundleMetrics(String bundleId) throws ServiceException {
+    long start = start("getBundleMetrics");
+    try {
+      return delegate.getBundleMetrics(bundleId);
+    } finally {
+      end("getBundleMetrics", start);
+    }
+  }
+
+  @Override
+  public void updateBundle(String bundleId, BundleDataChangeSet changeSet) throws ServiceException {
+    long start = start("updateBundle");
+    try {
+      delegate.updateBundle(bundleId, changeSet);
+    } finally {
+      end("updateBundle", start);
+      session.invalidateBundleInfo(bundleId);
+    }
+  }
+
+  @Override
+  public void deleteBundle(String bundleId) throws ServiceException {
+    long start = start("deleteBundle");
+    try {
+      delegate.deleteBundle(bundleId);
+    } finally {
+      end("deleteBundle", start);
+      session.invalidateBundleInfo(bundleId);
+    }
+    session.bundleDeleted(bundleId);
+  }
+
+  @Override
+  public Map<String, String> getResourceStrings(String bundleId, String language, boolean fallback)
+      throws ServiceException {
+    long start = start("getResourceStrings");
+    try {
+      Map<String, String> strings = delegate.getResourceStrings(bundleId, language, fallback);
+      session.recordFetched(bundleId, strings == null ? 0 : strings.size());
+      return strings;
+    } finally {
+      end("getResourceStrings", start);
+    }
+  }
+
+  @Override
+  public Map<String, ResourceEntryData> getResourceEntries(String bundleId, String language) throws ServiceException {
+    long start = start("getResourceEntries");
+    try {
+      return delegate.getResourceEntries(bundleId, language);
+    } finally {
+      end("getResourceEntries", start);
+    }
+  }
+
+  @Override
+  public LanguageMetrics getLanguageMetrics(String bundleId, String language) throws ServiceException {
+    long start = start("getLanguageMetrics");
+    try {
+      return delegate.getLanguageMetrics(bundleId, language);
+    } finally {
+      end("getLanguageMetrics", start);
+    }
+  }
+
+  @Override
+  public void uploadResourceStrings(String bundleId, String language, Map<String, String> strings)
+      throws ServiceException {
+    long start = start("uploadResourceStrings");
+    try {
+      delegate.uploadResourceStrings(bundleId, language, strings);
+      session.recordStrings(bundleId, strings);
+    } finally {
+      end("uploadResourceStrings", start);
+    }
+  }
+
+  @Override
+  public void uploadResourceEntries(String bundleId, String language, Map<String,
+      NewResourceEntryData> newResourceEntries) throws ServiceException {
+    long start = start("uploadResourceEntries");
+    try {
+      delegate.uploadResourceEntries(bundleId, language, newResourceEntries);
+      session.recordEntries(bundleId, newResourceEntries);
+    } finally {
+      end("uploadResourceEntries", start);
+    }
+  }
+
+  @Override
+  public void updateResourceStrings(String bundleId, String language, Map<String, String> strings, boolean resync)
+      throws ServiceException {
+    long start = start("updateResourceStrings");
+    try {
+      delegate.updateResourceStrings(bundleId, language, strings, resync);
+      session.recordStrings(bundleId, strings);
+    } finally {
+      end("updateResourceStrings", start);
+    }
+  }
+
+  @Override
+  public void updateResourceEntries(String bundleId, String language, Map<String,
+      ResourceEntryDataChangeSet> resourceEntries, boolean resync) throws ServiceException {
+    long start = start("updateResourceEntries");
+    try {
+      delegate.updateResourceEntries(bundleId, language, resourceEntries, resync);
+      session.recordEntries(bundleId, resourceEntries);
+    } finally {
+      end("updateResourceEntries", start);
+    }
+  }
+
+  @Override
+  public ResourceEntryData getResourceEntry(String bundleId, String language, String resourceKey)
+      throws ServiceException {
+    long start = start("getResourceEntry");
+    try {
+      return delegate.getResourceEntry(bundleId, language, resourceKey);
+    } finally {
+      end("getResourceEntry", start);
+    }
+  }
+
+  @Override
+  public void updateResourceEntry(String bundleId, String language, String resourceKey,
+      ResourceEntryDataChangeSet changeSet) throws ServiceException {
+    long start = start("updateResourceEntry");
+    try {
+      delegate.updateResourceEntry(bundleId, language, resourceKey, changeSet);
+    } finally {
+      end("updateResourceEntry", start);
+    }
+  }
+
+  @Override
+  public Map<String, UserData> getUsers() throws ServiceException {
+    long start = start("getUsers");
+    try {
+      return delegate.getUsers();
+    } finally {
+      end("getUsers", start);
+    }
+  }
+
+  @Override
+  public UserData createUser(NewUserData newUserData) throws ServiceException {
+    long start = start("createUser");
+    try {
+      return delegate.createUser(newUserData);
+    } finally {
+      end("createUser", start);
+    }
+  }
+
+  @Override
+  public UserData getUser(String userId) throws ServiceException {
+    long start = start("getUser");
+    try {
+      return delegate.getUser(userId);
+    } finally {
+      end("getUser", start);
+    }
+  }
+
+  @Override
+  public UserData updateUser(String userId, UserDataChangeSet changeSet, boolean resetPassword)
+      throws ServiceException {
+    long start = start("updateUser");
+    try {
+      return delegate.updateUser(userId, changeSet, resetPassword);
+    } finally {
+      end("updateUser", start);
+    }
+  }
+
+  @Override
+  public void deleteUser(String userId) throws ServiceException {
+    long start = start("deleteUser");
+    try {
+      delegate.deleteUser(userId);
+    } finally {
+      end("deleteUser", start);
+    }
+  }
+
+  @Override
+  public Map<String, MTServiceBindingData> getAllMTServiceBindings() throws ServiceException {
+    long start = start("getAllMTServiceBindings");
+    try {
+      return delegate.getAllMTServiceBindings();
+    } finally {
+      end("getAllMTServiceBindings", start);
+    }
+  }
+
+  @Override
+  public Map<String, Map<String, Set<String>>> getAvailableMTLanguages() throws ServiceException {
+    long start = start("getAvailableMTLanguages");
+    try {
+      return delegate.getAvailableMTLanguages();
+    } finally {
+      end("getAvailableMTLanguages", start);
+    }
+  }
+
+  @Override
+  public MTServiceBindingData getMTServiceBinding(String mtServiceBindingId) throws ServiceException {
+    long start = start("getMTServiceBinding");
+    try {
+      return delegate.getMTServiceBinding(mtServiceBindingId);
+    } finally {
+      end("getMTServiceBinding", start);
+    }
+  }
+
+  @Override
+  public Map<String, Map<String, NewTranslationConfigData>> getAllTranslationConfigs() throws ServiceException {
+    long start = start("getAllTranslationConfigs");
+    try {
+      return delegate.getAllTranslationConfigs();
+    } finally {
+      end("getAllTranslationConfigs", start);
+    }
+  }
+
+  @Override
+  public Map<String, Set<String>> getConfiguredMTLanguages() throws ServiceException {
+    long start = start("getConfiguredMTLanguages");
+    try {
+      return delegate.getConfiguredMTLanguages();
+    } finally {
+      end("getConfiguredMTLanguages", start);
+    }
+  }
+
+  @Override
+  public void putTranslationConfig(String sourceLanguage, String targetLanguage, NewTranslationConfigData configData)
+      throws ServiceException {
+    long start = start("putTranslationConfig");
+    try {
+      delegate.putTranslationConfig(sourceLanguage, targetLanguage, configData);
+    } finally {
+      end("putTranslationConfig", start);
+    }
+  }
+
+  @Override
+  public TranslationConfigData getTranslationConfig(String sourceLanguage, String targetLanguage)
+      throws ServiceException {
+    long start = start("getTranslationConfig");
+    try {
+      return delegate.getTranslationConfig(sourceLanguage, targetLanguage);
+    } finally {
+      end("getTranslationConfig", start);
+    }
+  }
+
+  @Override
+  public void deleteTranslationConfig(String sourceLanguage, String targetLanguage) throws ServiceException {
+    long start = start("deleteTranslationConfig");
+    try {
+      delegate.deleteTranslationConfig(sourceLanguage, targetLanguage);
+    } finally {
+      end("deleteTranslationConfig", start);
+    }
+  }
+
+  @Override
+  public Map<String, TranslationRequestData> getTranslationRequests() throws ServiceException {
+    long start = start("getTranslationRequests");
+    try {
+      return delegate.getTranslationRequests();
+    } finally {
+      end("getTranslationRequests", start);
+    }
+  }
+
+  @Override
+  public TranslationRequestData getTranslationRequest(String requestId) throws ServiceException {
+    long start = start("getTranslationRequest");
+    try {
+      return delegate.getTranslationRequest(requestId);
+    } finally {
+      end("getTranslationRequest", start);
+    }
+  }
+
+  @Override
+  public TranslationRequestData createTranslationRequest(NewTranslationRequestData newTranslationRequestData)
+      throws ServiceException {
+    long start = start("createTranslationRequest");
+    try {
+      return delegate.createTranslationRequest(newTranslationRequestData);
+    } finally {
+      end("createTranslationRequest", start);
+    }
+  }
+
+  @Override
+  public TranslationRequestData updateTranslationRequest(String requestId, TranslationRequestDataChangeSet changeSet)
+      throws ServiceException {
+    long start = start("updateTranslationRequest");
+    try {
+      return delegate.updateTranslationRequest(requestId, changeSet);
+    } finally {
+      end("updateTranslationRequest", start);
+    }
+  }
+
+  @Override
+  public void deleteTranslationRequest(String requestId) throws ServiceException {
+    long start = start("deleteTranslationRequest");
+    try {
+      delegate.deleteTranslationRequest(requestId);
+    } finally {
+      end("deleteTranslationRequest", start);
+    }
+  }
+
+  @Override
+  public BundleData getTRBundleInfo(String requestId, String bundleId) throws ServiceException {
+    long start = start("getTRBundleInfo");
+    try {
+      return delegate.getTRBundleInfo(requestId, bundleId);
+    } finally {
+      end("getTRBundleInfo", start);
+    }
+  }
+
+  @Override
+  public Map<String, ResourceEntryData> getTRResourceEntries(String requestId, String bundleId, String language)
+      throws ServiceException {
+    long start = start("getTRResourceEntries");
+    try {
+      return delegate.getTRResourceEntries(requestId, bundleId, language);
+    } finally {
+      end("getTRResourceEntries", start);
+    }
+  }
+
+  @Override
+  public ResourceEntryData getTRResourceEntry(String requestId, String bundleId, String language, String resourceKey)
+      throws ServiceException {
+    long start = start("getTRResourceEntry");
+    try {
+      return delegate.getTRResourceEntry(requestId, bundleId, language, resourceKey);
+    } finally {
+      end("getTRResourceEntry", start);
+    }
+  }
+
+  @Override
+  public void getXliffFromBundles(String sourceLanguage, String targetLanguage, Set<String> bundleIds,
+      OutputStream outputXliff) throws ServiceException, IOException {
+    long start = start("getXliffFromBundles");
+    try {
+      delegate.getXliffFromBundles(sourceLanguage, targetLanguage, bundleIds, outputXliff);
+    } finally {
+      end("getXliffFromBundles", start);
+    }
+  }
+
+  @Override
+  public void updateBundlesWithXliff(InputStream inputXliff) throws ServiceException, IOException {
+    long start = start("updateBundlesWithXliff");
+    try {
+      delegate.updateBundlesWithXliff(inputXliff);
+    } finally {
+      end("updateBundlesWithXliff", start);
+    }
+  }
+
+  @Override
+  public void getXliffFromTranslationRequest(String requestId, String sourceLanguage, String targetLanguage,
+      OutputStream outputXliff) throws ServiceException, IOException {
+    long start = start("getXliffFromTranslationRequest");
+    try {
+      delegate.getXliffFromTranslationRequest(requestId, sourceLanguage, targetLanguage, outputXliff);
+    } finally {
+      end("getXliffFromTranslationRequest", start);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/***
+ * Synchronization of one workspace: an entry of a batch manifest or a job
+ * submitted to the sync server. Fields are filled from JSON.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class SyncJob {
+
+  static final String WCS_TO_GP = "wcs_to_gp";
+  static final String GP_TO_WCS = "gp_to_wcs";
+  static final String BOTH = "both";
+
+  // Options a job may pass to the commands
+  private static final Set<String> JOB_OPTIONS = new HashSet<String>(Arrays.asList("--streaming",
+      "--uploadThreads", "--maxBundleKeys", "--maxBundleBytes", "--keyScheme", "--extractThreads",
+      "--languageThreads"));
+
+  // WCS transport options, rejected: the transport is shared by all the jobs
+  // and configured on the batch or serve command
+  private static final Set<String> TRANSPORT_OPTIONS = new HashSet<String>(Arrays.asList("--connectTimeout",
+      "--readTimeout", "--gzipRequests", "--requestChunkSize", "--maxConnections", "--wcsUrl"));
+
+  // Options reading or writing local files, only accepted from a batch
+  // manifest and never from jobs submitted over HTTP
+  private static final Set<String> FILE_OPTIONS = new HashSet<String>(Arrays.asList("--syncState",
+      "--logFile", "--metricsFile", "--metricsJson", "--inputFile", "--outputFile"));
+
+  String workspace;
+  String bundle;
+  String languages;
+  String direction;
+  String targetWorkspaces;
+  String options;
+
+  /***
+   * Check the job and normalize its direction, both by default. Options are
+   * checked against an allow-list: options which never return, such as
+   * --watch, and credentials are always rejected
+   *
+   * @param allowFiles
+   *          whether options reading or writing local files are accepted
+   * @throws WCSWorkspaceException
+   */
+  void validate(boolean allowFiles) throws WCSWorkspaceException {
+    direction = direction == null ? BOTH : direction.toLowerCase(Locale.ROOT);
+    if (!direction.equals(WCS_TO_GP) && !direction.equals(GP_TO_WCS) && !direction.equals(BOTH)) {
+      throw new WCSWorkspaceException("direction must be " + WCS_TO_GP + ", " + GP_TO_WCS + " or " + BOTH);
+    }
+    if (workspace == null && bundle == null) {
+      throw new WCSWorkspaceException("workspace or bundle is required");
+    }
+    for (String option : getOptions()) {
+      if (option.startsWith("@")) {
+        throw new WCSWorkspaceException("option files are not supported: " + option);
+      }
+      if (!option.startsWith("-") || isNumber(option)) {
+        // Value of the previous option
+        continue;
+      }
+      if (TRANSPORT_OPTIONS.contains(option)) {
+        throw new WCSWorkspaceException("option " + option
+            + " is shared by all jobs, it is only supported on the batch or serve command");
+      }
+      if (FILE_OPTIONS.contains(option)) {
+        if (!allowFiles) {
+          throw new WCSWorkspaceException("option " + option + " is only supported in batch manifests");
+        }
+      } else if (!JOB_OPTIONS.contains(option)) {
+        throw new WCSWorkspaceException("option " + option + " is not supported in jobs");
+      }
+    }
+  }
+
+  /***
+   * Extra options of the commands
+   *
+   * @return options, empty if none
+   */
+  List<String> getOptions() {
+    if (options == null || options.trim().isEmpty()) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<String>(Arrays.asList(options.trim().split("\\s+")));
+  }
+
+  private static boolean isNumber(String value) {
+    try {
+      Double.parseDouble(value);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /***
+   * Workspace or, without one, bundle prefix the job works on. Jobs with the
+   * same name must not run at the same time
+   *
+   * @return name
+   */
+  String getName() {
+    return workspace != null ? workspace : bundle;
+  }
+
+  boolean runsWCSToGP() {
+    return !direction.equals(GP_TO_WCS);
+  }
+
+  boolean runsGPToWCS() {
+    return !direction.equals(WCS_TO_GP);
+  }
+
+  /***
+   * Whether both jobs would do the same work
+   *
+   * @param other
+   * @return true if same
+   */
+  boolean sameAs(SyncJob other) {
+    return equal(workspace, other.workspace) && equal(bundle, other.bundle) && equal(languages, other.languages)
+        && equal(direction, other.direction) && equal(targetWorkspaces, other.targetWorkspaces)
+        && equal(options, other.options);
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  @Override
+  public String toString() {
+    return getName() + (workspace != null && bundle != null ? " (" + bundle + ")" : "");
+  }
+}
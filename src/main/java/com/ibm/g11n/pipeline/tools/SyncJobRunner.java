@@ -0,0 +1,226 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.gson.stream.JsonWriter;
+
+/***
+ * Runs the commands of a {@link SyncJob} on a Globalization Pipeline session
+ * and a WCS transport shared with the other jobs of the JVM. A failed command
+ * is reported in the result, never thrown.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class SyncJobRunner {
+
+  private final String jsonGPCreds;
+  private final String jsonWCSCreds;
+  private final String versionDate;
+  private final GPSession session;
+
+  /***
+   * @param jsonGPCreds
+   * @param jsonWCSCreds
+   *          passed to every command if not null
+   * @param versionDate
+   *          passed to every command if not null
+   * @param session
+   *          shared session
+   */
+  SyncJobRunner(String jsonGPCreds, String jsonWCSCreds, String versionDate, GPSession session) {
+    this.jsonGPCreds = jsonGPCreds;
+    this.jsonWCSCreds = jsonWCSCreds;
+    this.versionDate = versionDate;
+    this.session = session;
+  }
+
+  /***
+   * Run the commands of a job. GP_To_WCS is skipped when WCS_To_GP failed
+   *
+   * @param id
+   *          job id, names the log file of GP_To_WCS
+   * @param job
+   * @return result
+   */
+  Result run(String id, SyncJob job) {
+    Result result = new Result(job);
+    boolean synced = true;
+    if (job.runsWCSToGP()) {
+      Outcome outcome = runCommand(new WCS_To_GP(), id, job);
+      result.add(outcome);
+      synced = outcome.succeeded();
+    }
+    if (job.runsGPToWCS()) {
+      if (synced) {
+        result.add(runCommand(new GP_To_WCS(), id, job));
+      } else {
+        result.add(new Outcome("GP_To_WCS", Outcome.SKIPPED, 0, "WCS_To_GP failed"));
+      }
+    }
+    return result;
+  }
+
+  private Outcome runCommand(BaseUtility utility, String id, SyncJob job) {
+    String command = utility.getClass().getSimpleName();
+    List<String> args = new ArrayList<String>(Arrays.asList("-g", jsonGPCreds));
+    addOption(args, "-s", job.workspace);
+    addOption(args, "-b", job.bundle);
+    addOption(args, "-t", job.languages);
+    addOption(args, "-j", jsonWCSCreds);
+    addOption(args, "-v", versionDate);
+    List<String> options = job.getOptions();
+    if (utility instanceof GP_To_WCS) {
+      addOption(args, "-w", job.targetWorkspaces);
+      if (!options.contains("--logFile")) {
+        // Jobs must not share the default timestamped log file
+        args.add("--logFile");
+        args.add("gp_to_wcs_" + id + "_" + job.getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+      }
+    }
+    args.addAll(options);
+
+    long start = System.nanoTime();
+    try {
+      new JCommander(utility).parse(args.toArray(new String[args.size()]));
+      utility.shareResources(session);
+      utility.run();
+    } catch (ParameterException e) {
+      return new Outcome(command, Outcome.FAILED, 0, e.getMessage());
+    } catch (Exception e) {
+      e.printStackTrace();
+      return new Outcome(command, Outcome.FAILED, 0, e.getMessage() != null ? e.getMessage() : e.toString());
+    }
+    return new Outcome(command, Outcome.OK, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), null);
+  }
+
+  private static void addOption(List<String> args, String name, String value) {
+    if (value != null) {
+      args.add(name);
+      args.add(value);
+    }
+  }
+
+  /***
+   * Outcome of one command of a job
+   */
+  static final class Outcome {
+    static final String OK = "OK";
+    static final String FAILED = "FAILED";
+    static final String SKIPPED = "SKIPPED";
+
+    private final String command;
+    private final String status;
+    private final long millis;
+    private final String error;
+
+    Outcome(String command, String status, long millis, String error) {
+      this.command = command;
+      this.status = status;
+      this.millis = millis;
+      this.error = error;
+    }
+
+    boolean succeeded() {
+      return status.equals(OK);
+    }
+
+    @Override
+    public String toString() {
+      return command + " " + status + (error == null ? " " + millis + " ms" : " (" + error + ")");
+    }
+  }
+
+  /***
+   * Result of a job
+   */
+  static final class Result {
+    private final SyncJob job;
+    private final List<Outcome> outcomes = new ArrayList<Outcome>();
+
+    Result(SyncJob job) {
+      this.job = job;
+    }
+
+    void add(Outcome outcome) {
+      outcomes.add(outcome);
+    }
+
+    SyncJob getJob() {
+      return job;
+    }
+
+    List<Outcome> getOutcomes() {
+      return Collections.unmodifiableList(outcomes);
+    }
+
+    boolean succeeded() {
+      for (Outcome outcome : outcomes) {
+        if (!outcome.succeeded()) {
+          return false;
+        }
+      }
+      return !outcomes.isEmpty();
+    }
+
+    /***
+     * Write the job and the outcome of its commands as fields of the current
+     * JSON object
+     *
+     * @param out
+     * @throws IOException
+     */
+    void writeFields(JsonWriter out) throws IOException {
+      out.name("workspace").value(job.workspace);
+      out.name("bundle").value(job.bundle);
+      out.name("languages").value(job.languages);
+      out.name("direction").value(job.direction);
+      out.name("success").value(succeeded());
+      out.name("commands").beginArray();
+      for (Outcome outcome : outcomes) {
+        out.beginObject();
+        out.name("command").value(outcome.command);
+        out.name("status").value(outcome.status);
+        out.name("millis").value(outcome.millis);
+        if (outcome.error != null) {
+          out.name("error").value(outcome.error);
+        }
+        out.endObject();
+      }
+      out.endArray();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder line = new StringBuilder(job.toString()).append(" -> ");
+      for (int i = 0; i < outcomes.size(); i++) {
+        line.append(i > 0 ? ", " : "").append(outcomes.get(i));
+      }
+      return line.toString();
+    }
+  }
+}
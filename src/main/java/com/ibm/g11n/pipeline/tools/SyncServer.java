@@ -0,0 +1,498 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.beust.jcommander.ParametersDelegate;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.g11n.pipeline.tools.SyncJobRunner.Result;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * Long running sync server. One JVM keeps the Globalization Pipeline session
+ * (client, bundle catalog, bundle information) and the WCS connection pool
+ * warm, and runs WCS_To_GP and GP_To_WCS jobs submitted over a small HTTP API:
+ * <ul>
+ * <li>POST /jobs with a job as in a batch manifest, answers the job id</li>
+ * <li>GET /jobs/id for the status and result of a job, GET /jobs for all of
+ * them</li>
+ * <li>GET /metrics for the metrics in the Prometheus text format</li>
+ * <li>GET /health</li>
+ * </ul>
+ * Jobs of the same workspace run one after the other. A job identical to one
+ * still queued for its workspace is not queued again, the queued job is
+ * returned instead.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@Parameters(commandDescription = "Run a server accepting WCS_To_GP and GP_To_WCS jobs over HTTP")
+final class SyncServer implements Command, Closeable {
+
+  static final String QUEUED = "QUEUED";
+  static final String RUNNING = "RUNNING";
+  static final String SUCCEEDED = "SUCCEEDED";
+  static final String FAILED = "FAILED";
+
+  @Parameter(names = { "-g",
+      "--jsonGPCreds" }, description = "Globalization Pipeline Credentials file", required = true)
+  private String jsonGPCreds;
+
+  @Parameter(names = { "-j", "--jsonWCSCreds" }, description = "Watson Conversation Credentials file")
+  private String jsonWCSCreds;
+
+  @Parameter(names = { "-v", "--versionDate" }, description = "Watson Conversation API version Date")
+  private String versionDate;
+
+  @Parameter(names = { "--port" }, description = "Port of the HTTP API")
+  private int port = 8085;
+
+  @Parameter(names = { "--bindAddress" }, description = "Address the HTTP API listens on")
+  private String bindAddress = "127.0.0.1";
+
+  @Parameter(names = { "--workers" }, description = "Number of jobs run in parallel")
+  private int workers = 4;
+
+  @Parameter(names = { "--history" }, description = "Number of finished jobs kept for status queries")
+  private int history = 1000;
+
+  @Parameter(names = {
+      "--cacheTtl" }, description = "Seconds the GP bundle catalog and bundle information are cached for")
+  private int cacheTtl = 300;
+
+  @ParametersDelegate
+  private final TransportOptions transport = new TransportOptions();
+
+  private final RunMetrics metrics = new RunMetrics("serve");
+  private final AtomicLong nextId = new AtomicLong();
+  private final AtomicLong cachesCleared = new AtomicLong(System.nanoTime());
+  private final CountDownLatch stopped = new CountDownLatch(1);
+
+  // Guarded by this: jobs by id in submission order, and the jobs of every
+  // workspace with a job running
+  private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<String, Job>();
+  private final Map<String, Lane> lanes = new HashMap<String, Lane>();
+
+  private GPSession gpSession;
+  private SyncJobRunner runner;
+  private HttpServer server;
+  private ExecutorService workerPool;
+  private ExecutorService httpPool;
+
+  // A submitted job
+  private static final class Job {
+    private final String id;
+    private final SyncJob spec;
+    private final long submitted = System.currentTimeMillis();
+    private volatile String status = QUEUED;
+    private volatile long started;
+    private volatile long finished;
+    private volatile Result result;
+    private volatile int duplicates;
+
+    Job(String id, SyncJob spec) {
+      this.id = id;
+      this.spec = spec;
+    }
+  }
+
+  // Job running for a workspace and the jobs waiting for it to end
+  private static final class Lane {
+    private Job running;
+    private final Deque<Job> pending = new ArrayDeque<Job>();
+  }
+
+  /***
+   * Start the server and serve until the JVM is stopped
+   *
+   * @throws Exception
+   */
+  @Override
+  public void execute() throws Exception {
+    start();
+    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }, "sync-server-shutdown"));
+    stopped.await();
+  }
+
+  /***
+   * Start the worker pool and the HTTP API
+   *
+   * @throws IOException
+   * @throws WCSWorkspaceException
+   *           if the Globalization Pipeline credentials are invalid
+   */
+  void start() throws IOException, WCSWorkspaceException {
+    transport.configure(metrics);
+    GPSession session = getGPSession();
+    session.setMetrics(metrics);
+    runner = new SyncJobRunner(jsonGPCreds, jsonWCSCreds, versionDate, session);
+
+    workerPool = Executors.newFixedThreadPool(Math.max(1, workers), threadFactory("sync-worker-", false));
+    httpPool = Executors.newFixedThreadPool(2, threadFactory("sync-http-", true));
+    // Response headers and bodies are written separately; without TCP_NODELAY
+    // every response waits for the delayed ACK of the client, about 40 ms
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+    server.setExecutor(httpPool);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          serve(exchange);
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+          send(exchange, 500, error(e.toString()));
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+    System.out.println("** Sync server listening on " + getUrl() + ", " + workers + " workers **");
+  }
+
+  /***
+   * Base URL of the HTTP API
+   *
+   * @return url
+   */
+  String getUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  private synchronized GPSession getGPSession() throws WCSWorkspaceException {
+    if (gpSession == null) {
+      gpSession = GPSession.load(jsonGPCreds);
+    }
+    return gpSession;
+  }
+
+  synchronized void setGPSession(GPSession gpSession) {
+    this.gpSession = gpSession;
+  }
+
+  /***
+   * Stop accepting requests and wait for the running jobs to end. Queued jobs
+   * are dropped
+   */
+  @Override
+  public void close() throws IOException {
+    if (server == null) {
+      return;
+    }
+    System.out.println("** Sync server stopping **");
+    server.stop(0);
+    synchronized (this) {
+      for (Lane lane : lanes.values()) {
+        lane.pending.clear();
+      }
+    }
+    workerPool.shutdown();
+    try {
+      workerPool.awaitTermination(60, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    httpPool.shutdown();
+    gpSession.printCallCounts();
+    stopped.countDown();
+  }
+
+  /***
+   * Queue a job. A job identical to one still queued for the same workspace
+   * is dropped and the queued job is returned
+   *
+   * @param spec
+   *          validated job
+   * @return job
+   */
+  private synchronized Job submit(SyncJob spec) {
+    Lane lane = lanes.get(spec.getName());
+    if (lane != null) {
+      for (Job queued : lane.pending) {
+        if (queued.spec.sameAs(spec)) {
+          queued.duplicates++;
+          metrics.addJob("deduplicated");
+          return queued;
+        }
+      }
+    }
+    Job job = new Job(Long.toString(nextId.incrementAndGet()), spec);
+    jobs.put(job.id, job);
+    metrics.addJob("submitted");
+    if (lane == null) {
+      lane = new Lane();
+      lanes.put(spec.getName(), lane);
+    }
+    if (lane.running == null) {
+      lane.running = job;
+      dispatch(job);
+    } else {
+      lane.pending.add(job);
+    }
+    trimHistory();
+    return job;
+  }
+
+  private void dispatch(final Job job) {
+    workerPool.execute(new Runnable() {
+      @Override
+      public void run() {
+        runJob(job);
+      }
+    });
+  }
+
+  private void runJob(Job job) {
+    job.started = System.currentTimeMillis();
+    job.status = RUNNING;
+    try {
+      refreshCaches();
+      Result result = runner.run(job.id, job.spec);
+      job.result = result;
+      job.status = result.succeeded() ? SUCCEEDED : FAILED;
+    } catch (RuntimeException e) {
+      e.printStackTrace();
+      job.status = FAILED;
+    } finally {
+      job.finished = System.currentTimeMillis();
+      metrics.addJob(job.status.toLowerCase(Locale.ROOT));
+      System.out.println("** Job " + job.id + " " + job.spec + " " + job.status + " in "
+          + (job.finished - job.started) + " ms **");
+      next(job);
+    }
+  }
+
+  // Start the next job of the workspace of a finished job
+  private synchronized void next(Job finished) {
+    Lane lane = lanes.get(finished.spec.getName());
+    Job job = lane.pending.poll();
+    if (job == null || workerPool.isShutdown()) {
+      lanes.remove(finished.spec.getName());
+    } else {
+      lane.running = job;
+      dispatch(job);
+    }
+  }
+
+  // Changes made on GP outside of the server are seen after cacheTtl
+  private void refreshCaches() {
+    long cleared = cachesCleared.get();
+    long now = System.nanoTime();
+    if (now - cleared > TimeUnit.SECONDS.toNanos(cacheTtl) && cachesCleared.compareAndSet(cleared, now)) {
+      gpSession.clearCaches();
+    }
+  }
+
+  // Drop the oldest finished jobs beyond the history size
+  private void trimHistory() {
+    Iterator<Job> iterator = jobs.values().iterator();
+    int excess = jobs.size() - history;
+    while (excess > 0 && iterator.hasNext()) {
+      Job job = iterator.next();
+      if (job.finished != 0) {
+        iterator.remove();
+        excess--;
+      }
+    }
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    String method = exchange.getRequestMethod();
+    String path = exchange.getRequestURI().getPath();
+    if (path.equals("/jobs") && method.equals("POST")) {
+      postJob(exchange);
+    } else if (path.equals("/jobs") && method.equals("GET")) {
+      List<Job> snapshot;
+      synchronized (this) {
+        snapshot = new ArrayList<Job>(jobs.values());
+      }
+      StringWriter body = new StringWriter();
+      JsonWriter out = new JsonWriter(body);
+      out.beginArray();
+      for (Job job : snapshot) {
+        writeJob(out, job, false);
+      }
+      out.endArray();
+      send(exchange, 200, body.toString());
+    } else if (path.startsWith("/jobs/") && method.equals("GET")) {
+      Job job;
+      synchronized (this) {
+        job = jobs.get(path.substring("/jobs/".length()));
+      }
+      if (job == null) {
+        send(exchange, 404, error("Job not found"));
+      } else {
+        StringWriter body = new StringWriter();
+        writeJob(new JsonWriter(body), job, false);
+        send(exchange, 200, body.toString());
+      }
+    } else if (path.equals("/metrics") && method.equals("GET")) {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+      metrics.writePrometheus(writer);
+      writer.flush();
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.size());
+      body.writeTo(exchange.getResponseBody());
+    } else if (path.equals("/health") && method.equals("GET")) {
+      int running = 0;
+      int queued = 0;
+      synchronized (this) {
+        for (Lane lane : lanes.values()) {
+          running++;
+          queued += lane.pending.size();
+        }
+      }
+      send(exchange, 200, "{\"status\":\"ok\",\"running\":" + running + ",\"queued\":" + queued + "}");
+    } else {
+      send(exchange, 404, error("Not found"));
+    }
+  }
+
+  private void postJob(HttpExchange exchange) throws IOException {
+    SyncJob spec;
+    try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+      spec = new Gson().fromJson(reader, SyncJob.class);
+      if (spec == null) {
+        throw new WCSWorkspaceException("A job is required");
+      }
+      spec.validate(false);
+    } catch (JsonParseException | WCSWorkspaceException e) {
+      send(exchange, 400, error(e.getMessage()));
+      return;
+    }
+    if (workerPool.isShutdown()) {
+      send(exchange, 503, error("Server is stopping"));
+      return;
+    }
+    Job job = submit(spec);
+    StringWriter body = new StringWriter();
+    // A deduplicated request gets the job queued before it
+    writeJob(new JsonWriter(body), job, job.spec != spec);
+    send(exchange, 202, body.toString());
+  }
+
+  private static void writeJob(JsonWriter out, Job job, boolean deduplicated) throws IOException {
+    SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+    out.beginObject();
+    out.name("id").value(job.id);
+    out.name("status").value(job.status);
+    if (deduplicated) {
+      out.name("deduplicated").value(true);
+    }
+    if (job.duplicates > 0) {
+      out.name("duplicates").value(job.duplicates);
+    }
+    out.name("submitted").value(iso.format(new Date(job.submitted)));
+    if (job.started != 0) {
+      out.name("started").value(iso.format(new Date(job.started)));
+    }
+    if (job.finished != 0) {
+      out.name("finished").value(iso.format(new Date(job.finished)));
+    }
+    Result result = job.result;
+    if (result != null) {
+      result.writeFields(out);
+    } else {
+      out.name("workspace").value(job.spec.workspace);
+      out.name("bundle").value(job.spec.bundle);
+      out.name("languages").value(job.spec.languages);
+      out.name("direction").value(job.spec.direction);
+    }
+    out.endObject();
+    out.flush();
+  }
+
+  private static String error(String message) throws IOException {
+    StringWriter body = new StringWriter();
+    JsonWriter out = new JsonWriter(body);
+    out.beginObject().name("error").value(message).endObject();
+    out.flush();
+    return body.toString();
+  }
+
+  private static void send(HttpExchange exchange, int code, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(code, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static ThreadFactory threadFactory(final String prefix, final boolean daemon) {
+    return new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + count.incrementAndGet());
+        thread.setDaemon(daemon);
+        return thread;
+      }
+    };
+  }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/***
+ * Local record of what was last synchronized to Globalization Pipeline. For
+ * every section (&lt;prefix&gt;-intents, &lt;prefix&gt;-entities,
+ * &lt;prefix&gt;-dialogs) it keeps the bundles and, per bundle, the hash of
+ * each resource string. WCS_To_GP compares freshly extracted strings with this
+ * record instead of reading all bundles back from GP.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class SyncState {
+
+  private static final int VERSION = 2;
+
+  // bundle id -> resource key -> content fingerprint
+  private static final class SectionState extends ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, String>> {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private int version = VERSION;
+
+  // section -> recorded bundles
+  private ConcurrentSkipListMap<String, SectionState> sections = new ConcurrentSkipListMap<String, SectionState>();
+
+  /***
+   * Load sync state file. A missing or outdated file gives an empty state
+   * 
+   * @param path
+   * @return syncState
+   * @throws IOException
+   */
+  static SyncState load(String path) throws IOException {
+    File file = new File(path);
+    if (!file.exists()) {
+      return new SyncState();
+    }
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+      SyncState state = new Gson().fromJson(reader, SyncState.class);
+      if (state == null || state.version != VERSION || state.sections == null) {
+        System.out.println("Ignoring outdated sync state " + path);
+        return new SyncState();
+      }
+      return state;
+    }
+  }
+
+  /***
+   * Write sync state file. The file is atomically replaced once it is fully
+   * written
+   * 
+   * @param path
+   * @throws IOException
+   */
+  void save(String path) throws IOException {
+    File file = new File(path).getAbsoluteFile();
+    File tmp = new File(file.getPath() + ".tmp");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+      new GsonBuilder().setPrettyPrinting().create().toJson(this, writer);
+    }
+    // Readers see either the previous or the new state, never no file
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /***
+   * Recorded bundles of a section
+   * 
+   * @param section
+   * @return bundle id -> resource key -> content fingerprint, or null if the
+   *         section was never synchronized
+   */
+  Map<String, ? extends Map<String, String>> getSection(String section) {
+    return sections.get(section);
+  }
+
+  void resetSection(String section) {
+    sections.remove(section);
+  }
+
+  /***
+   * Record the complete content of a bundle after it was uploaded or read
+   * 
+   * @param bundleId
+   * @param strings
+   */
+  void putBundle(String bundleId, Map<String, String> strings) {
+    ConcurrentSkipListMap<String, String> fingerprints = new ConcurrentSkipListMap<String, String>();
+    for (Entry<String, String> entry : strings.entrySet()) {
+      fingerprints.put(entry.getKey(), fingerprint(entry.getValue()));
+    }
+    section(bundleId).put(bundleId, fingerprints);
+  }
+
+  /***
+   * Record changes sent to a bundle, a null value is a deleted resource string
+   * 
+   * @param bundleId
+   * @param delta
+   */
+  void updateBundle(String bundleId, Map<String, String> delta) {
+    SectionState bundles = section(bundleId);
+    ConcurrentSkipListMap<String, String> fingerprints = bundles.get(bundleId);
+    if (fingerprints == null) {
+      fingerprints = new ConcurrentSkipListMap<String, String>();
+      bundles.put(bundleId, fingerprints);
+    }
+    for (Entry<String, String> entry : delta.entrySet()) {
+      if (entry.getValue() == null) {
+        fingerprints.remove(entry.getKey());
+      } else {
+        fingerprints.put(entry.getKey(), fingerprint(entry.getValue()));
+      }
+    }
+  }
+
+  void removeBundle(String bundleId) {
+    section(bundleId).remove(bundleId);
+  }
+
+  private SectionState section(String bundleId) {
+    String section = BundleCatalog.sectionOf(bundleId);
+    SectionState bundles = sections.get(section);
+    if (bundles == null) {
+      SectionState newBundles = new SectionState();
+      bundles = sections.putIfAbsent(section, newBundles);
+      if (bundles == null) {
+        bundles = newBundles;
+      }
+    }
+    return bundles;
+  }
+
+  /***
+   * Fingerprint of a resource string: its hash and its estimated size
+   * 
+   * @param text
+   * @return hash:bytes
+   */
+  static String fingerprint(String text) {
+    return hash(text) + ":" + BundleSplitter.textBytes(text);
+  }
+
+  /***
+   * Estimated size of the resource string a fingerprint was taken from
+   * 
+   * @param fingerprint
+   * @return bytes
+   */
+  static long textBytes(String fingerprint) {
+    return Long.parseLong(fingerprint.substring(fingerprint.indexOf(':') + 1));
+  }
+
+  /***
+   * 64-bit FNV-1a hash of a resource string
+   * 
+   * @param text
+   * @return hash as hex
+   */
+  static String hash(String text) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash ^= text.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return Long.toHexString(hash);
+  }
+}
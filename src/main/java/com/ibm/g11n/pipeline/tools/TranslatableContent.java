@@ -0,0 +1,165 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Translatable content of a Watson Conversation workspace, extracted once and
+ * shared by WCS_To_GP (to build resource strings) and GP_To_WCS (to apply
+ * translated resource strings). Units of a section are kept in workspace
+ * order.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class TranslatableContent {
+
+  private String language;
+  private final Map<Section, List<TranslatableUnit>> units = new EnumMap<Section, List<TranslatableUnit>>(
+      Section.class);
+
+  TranslatableContent() {
+    for (Section section : Section.values()) {
+      units.put(section, new ArrayList<TranslatableUnit>());
+    }
+  }
+
+  String getLanguage() {
+    return language;
+  }
+
+  void setLanguage(String language) {
+    this.language = language;
+  }
+
+  void add(TranslatableUnit unit) {
+    units.get(unit.getSection()).add(unit);
+  }
+
+  void addAll(List<TranslatableUnit> sectionUnits) {
+    for (TranslatableUnit unit : sectionUnits) {
+      add(unit);
+    }
+  }
+
+  List<TranslatableUnit> getUnits(Section section) {
+    return Collections.unmodifiableList(units.get(section));
+  }
+
+  /***
+   * Resource strings of a section, keyed the way they are stored on GP.
+   * Different texts sharing a key are kept together
+   * 
+   * @param section
+   * @param keys
+   * @return resource key -> texts
+   */
+  TreeMap<String, TreeSet<String>> toResourceMap(Section section, ResourceKeys keys) {
+    return toResourceMap(units.get(section), keys);
+  }
+
+  /***
+   * Resource strings of a section built in parallel. Every task builds the
+   * keys of a range of units into its own map, maps are merged when tasks
+   * complete
+   * 
+   * @param section
+   * @param keyScheme
+   * @param pool
+   * @return resource key -> texts
+   */
+  TreeMap<String, TreeSet<String>> toResourceMap(Section section, int keyScheme, ForkJoinPool pool) {
+    return pool.invoke(new ResourceMapTask(units.get(section), keyScheme));
+  }
+
+  private static TreeMap<String, TreeSet<String>> toResourceMap(List<TranslatableUnit> sectionUnits,
+      ResourceKeys keys) {
+    TreeMap<String, TreeSet<String>> resources = new TreeMap<String, TreeSet<String>>();
+    for (TranslatableUnit unit : sectionUnits) {
+      if (unit.getKind() == Kind.DIALOG_CONDITION) {
+        continue;
+      }
+      String key = unit.key(keys);
+      TreeSet<String> texts = resources.get(key);
+      if (texts == null) {
+        texts = new TreeSet<String>();
+        resources.put(key, texts);
+      }
+      // Collision occurs if the set already holds a different text
+      texts.add(unit.getText());
+    }
+    return resources;
+  }
+
+  private static final class ResourceMapTask extends RecursiveTask<TreeMap<String, TreeSet<String>>> {
+    private static final long serialVersionUID = 1L;
+
+    // Units keyed by a single task
+    private static final int SPLIT_THRESHOLD = 2048;
+
+    private final List<TranslatableUnit> units;
+    private final int keyScheme;
+
+    ResourceMapTask(List<TranslatableUnit> units, int keyScheme) {
+      this.units = units;
+      this.keyScheme = keyScheme;
+    }
+
+    @Override
+    protected TreeMap<String, TreeSet<String>> compute() {
+      if (units.size() <= SPLIT_THRESHOLD) {
+        // ResourceKeys is not thread safe, one per task
+        return toResourceMap(units, new ResourceKeys(keyScheme));
+      }
+      int middle = units.size() >>> 1;
+      ResourceMapTask left = new ResourceMapTask(units.subList(0, middle), keyScheme);
+      left.fork();
+      TreeMap<String, TreeSet<String>> right = new ResourceMapTask(units.subList(middle, units.size()), keyScheme)
+          .compute();
+      return merge(left.join(), right);
+    }
+
+    // Merge the smaller map into the larger one
+    private static TreeMap<String, TreeSet<String>> merge(TreeMap<String, TreeSet<String>> a,
+        TreeMap<String, TreeSet<String>> b) {
+      TreeMap<String, TreeSet<String>> into = a.size() >= b.size() ? a : b;
+      TreeMap<String, TreeSet<String>> from = into == a ? b : a;
+      for (Map.Entry<String, TreeSet<String>> entry : from.entrySet()) {
+        TreeSet<String> texts = into.get(entry.getKey());
+        if (texts == null) {
+          into.put(entry.getKey(), entry.getValue());
+        } else {
+          texts.addAll(entry.getValue());
+        }
+      }
+      return into;
+    }
+  }
+}
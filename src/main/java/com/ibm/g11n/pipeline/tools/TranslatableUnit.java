@@ -0,0 +1,143 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+/***
+ * A piece of translatable content of a Watson Conversation workspace: its
+ * source text and where it is located in the workspace. Locations are array
+ * indices, so a unit extracted once can be applied to any copy of the same
+ * workspace.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class TranslatableUnit {
+
+  /***
+   * Workspace section, each section has its own GP bundles
+   */
+  enum Section {
+    INTENTS("-intents"), ENTITIES("-entities"), DIALOGS("-dialogs");
+
+    private final String bundleSuffix;
+
+    private Section(String bundleSuffix) {
+      this.bundleSuffix = bundleSuffix;
+    }
+
+    String bundleName(String prefix) {
+      return prefix + bundleSuffix;
+    }
+  }
+
+  /***
+   * Kind of content and its location:
+   * <ul>
+   * <li>INTENT_EXAMPLE: intents[group].examples[item].text</li>
+   * <li>ENTITY_VALUE: entities[group].values[item].value</li>
+   * <li>ENTITY_SYNONYM: entities[group].values[item].synonyms[index]</li>
+   * <li>DIALOG_TEXT: dialog_nodes[group].output.text as a String</li>
+   * <li>DIALOG_TEXT_ARRAY: dialog_nodes[group].output.text[index]</li>
+   * <li>DIALOG_TEXT_VALUES: dialog_nodes[group].output.text.values[index]</li>
+   * <li>DIALOG_CONDITION: dialog_nodes[group].conditions referring to entity
+   * values, not uploaded to GP</li>
+   * </ul>
+   */
+  enum Kind {
+    INTENT_EXAMPLE(Section.INTENTS),
+    ENTITY_VALUE(Section.ENTITIES),
+    ENTITY_SYNONYM(Section.ENTITIES),
+    DIALOG_TEXT(Section.DIALOGS),
+    DIALOG_TEXT_ARRAY(Section.DIALOGS),
+    DIALOG_TEXT_VALUES(Section.DIALOGS),
+    DIALOG_CONDITION(Section.DIALOGS);
+
+    private final Section section;
+
+    private Kind(Section section) {
+      this.section = section;
+    }
+
+    Section getSection() {
+      return section;
+    }
+  }
+
+  private final Kind kind;
+  private final String entity;
+  private final String text;
+  private final int group;
+  private final int item;
+  private final int index;
+
+  TranslatableUnit(Kind kind, String entity, String text, int group, int item, int index) {
+    this.kind = kind;
+    this.entity = entity;
+    this.text = text;
+    this.group = group;
+    this.item = item;
+    this.index = index;
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  Section getSection() {
+    return kind.getSection();
+  }
+
+  /***
+   * Entity name of entity values and synonyms, null otherwise
+   * 
+   * @return entity
+   */
+  String getEntity() {
+    return entity;
+  }
+
+  String getText() {
+    return text;
+  }
+
+  int getGroup() {
+    return group;
+  }
+
+  int getItem() {
+    return item;
+  }
+
+  int getIndex() {
+    return index;
+  }
+
+  /***
+   * Resource key of the unit: entity:value for entities, a hash based key for
+   * intent examples and dialog texts
+   * 
+   * @param keys
+   * @return key
+   */
+  String key(ResourceKeys keys) {
+    if (entity != null) {
+      return entity + ":" + text;
+    }
+    return keys.key(text);
+  }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.ibm.g11n.pipeline.tools.AsyncLogSink.Reason;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Writes translated resource strings into a copy of the workspace the
+ * translatable content was extracted from. Resource keys of the units are
+ * built once per key scheme and shared by all target languages; each
+ * language then does a single pass over the units, writing translations in
+ * place. Arrays losing duplicates are rebuilt once instead of removing
+ * elements one at a time.
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class TranslationApplier {
+
+  private final TranslatableContent content;
+
+  // section:scheme -> resource key of every unit of the section
+  private final ConcurrentHashMap<String, String[]> keys = new ConcurrentHashMap<String, String[]>();
+
+  TranslationApplier(TranslatableContent content) {
+    this.content = content;
+  }
+
+  /***
+   * Resource keys of the units of a section, in unit order
+   * 
+   * @param section
+   * @param scheme
+   * @return keys
+   */
+  private String[] keys(Section section, int scheme) {
+    String cacheKey = section + ":" + scheme;
+    String[] sectionKeys = keys.get(cacheKey);
+    if (sectionKeys == null) {
+      List<TranslatableUnit> units = content.getUnits(section);
+      ResourceKeys resourceKeys = new ResourceKeys(scheme);
+      sectionKeys = new String[units.size()];
+      for (int i = 0; i < sectionKeys.length; i++) {
+        // Conditions are looked up by entity value, not by key
+        if (units.get(i).getKind() != Kind.DIALOG_CONDITION) {
+          sectionKeys[i] = units.get(i).key(resourceKeys);
+        }
+      }
+      // Languages racing here compute identical keys
+      keys.putIfAbsent(cacheKey, sectionKeys);
+    }
+    return sectionKeys;
+  }
+
+  /***
+   * Update intent examples of the workspace with translated content
+   * 
+   * @param jsonWCSPayload
+   * @param intentsBundle
+   * @param log
+   */
+  void applyIntents(JsonObject jsonWCSPayload, Map<String, String> intentsBundle, AsyncLogSink.Logger log) {
+    // Fetch Intents
+    System.out.println("\n");
+    System.out.println("*** Updating Intents on WCS with Translatable Contents ***");
+    JsonArray intents = jsonWCSPayload.getAsJsonArray("intents");
+    List<TranslatableUnit> units = content.getUnits(Section.INTENTS);
+    // Use keys the way the bundles were written
+    String[] unitKeys = keys(Section.INTENTS, ResourceKeys.detect(intentsBundle.keySet()));
+    Set<String> intentSet = new HashSet<String>();
+    BitSet removeElements = new BitSet();
+    JsonObject intentObj = null;
+    JsonArray intentEx = null;
+    int group = -1;
+    for (int u = 0; u < unitKeys.length; u++) {
+      TranslatableUnit unit = units.get(u);
+      if (unit.getGroup() != group) {
+        removeElements(intentObj, "examples", removeElements);
+        group = unit.getGroup();
+        intentObj = intents.get(group).getAsJsonObject();
+        intentEx = intentObj.getAsJsonArray("examples");
+        intentSet.clear();
+      }
+      String keyTobeInserted = intentsBundle.get(unitKeys[u]);
+      if (keyTobeInserted != null) {
+        if (!keyTobeInserted.isEmpty()) {
+          String newKey = keyTobeInserted.toLowerCase();
+          if (intentSet.add(newKey)) {
+            intentEx.get(unit.getItem()).getAsJsonObject().addProperty("text", keyTobeInserted);
+          } else {
+            removeElements.set(unit.getItem());
+          }
+        } else {
+          log.log(unit.getKind(), unitKeys[u], unit.getText(), Reason.NOT_TRANSLATED);
+        }
+      }
+    }
+    removeElements(intentObj, "examples", removeElements);
+    System.out.println("    Intents Updated");
+  }
+
+  /***
+   * Update entity values and synonyms of the workspace with translated content
+   * 
+   * @param jsonResponseObject
+   * @param entityMap
+   * @param log
+   */
+  void applyEntities(JsonObject jsonResponseObject, Map<String, String> entityMap, AsyncLogSink.Logger log) {
+    // Fetch Entities
+    System.out.println("\n");
+    System.out.println("*** Updating Entities on WCS with Translatable Contents ***");
+    JsonArray entities = jsonResponseObject.getAsJsonArray("entities");
+    List<TranslatableUnit> units = content.getUnits(Section.ENTITIES);
+    String[] unitKeys = keys(Section.ENTITIES, ResourceKeys.LEGACY);
+    Set<String> intentSet = new HashSet<String>();
+    BitSet removeElements = new BitSet();
+    Set<String> synSet = new HashSet<String>();
+    JsonArray entitySet = new JsonArray();
+    JsonObject entityObj = null;
+    JsonArray valuesEx = null;
+    JsonObject entityValObj = null;
+    int group = -1;
+    int item = -1;
+    for (int u = 0; u < unitKeys.length; u++) {
+      TranslatableUnit unit = units.get(u);
+      if (unit.getGroup() != group || unit.getItem() != item) {
+        // Next entity value -> replace synonyms of the previous one
+        replaceSynonyms(entityValObj, entitySet);
+        entitySet = new JsonArray();
+        synSet.clear();
+        if (unit.getGroup() != group) {
+          removeElements(entityObj, "values", removeElements);
+          group = unit.getGroup();
+          entityObj = entities.get(group).getAsJsonObject();
+          valuesEx = entityObj.getAsJsonArray("values");
+          intentSet.clear();
+        }
+        item = unit.getItem();
+        entityValObj = valuesEx.get(item).getAsJsonObject();
+        JsonElement synonymsVal = entityValObj.get("synonyms");
+        if (synonymsVal != null && synonymsVal.isJsonArray() && synonymsVal.getAsJsonArray().size() == 0) {
+          entityValObj.remove("synonyms");
+        }
+      }
+      String keyTobeInserted = entityMap.get(unitKeys[u]);
+      if (unit.getKind() == Kind.ENTITY_VALUE) {
+        if (keyTobeInserted != null) {
+          if (!keyTobeInserted.isEmpty()) {
+            String newKey = keyTobeInserted.toLowerCase();
+            if (keyTobeInserted.length() > 64) {
+              log.log(unit.getKind(), unitKeys[u], unit.getText(), Reason.EXCEEDS_64_CHARACTERS);
+            } else {
+              if (intentSet.add(newKey)) {
+                entityValObj.addProperty("value", keyTobeInserted);
+              } else {
+                removeElements.set(item);
+              }
+            }
+          } else {
+            log.log(unit.getKind(), unitKeys[u], unit.getText(), Reason.NOT_TRANSLATED);
+          }
+        }
+      } else if (keyTobeInserted != null) {
+        if (!keyTobeInserted.isEmpty()) {
+          if (synSet.add(keyTobeInserted.toLowerCase())) {
+            entitySet.add(keyTobeInserted);
+          }
+        } else {
+          log.log(unit.getKind(), unitKeys[u], unit.getText(), Reason.NOT_TRANSLATED);
+        }
+      }
+    }
+    replaceSynonyms(entityValObj, entitySet);
+    removeElements(entityObj, "values", removeElements);
+    System.out.println("    Entities Updated");
+  }
+
+  /***
+   * Update dialog node output text and conditions of the workspace with
+   * translated content
+   * 
+   * @param jsonResponseObject
+   * @param dialogMap
+   * @param log
+   * @param entitiesBundle
+   */
+  void applyDialogs(JsonObject jsonResponseObject, Map<String, String> dialogMap, AsyncLogSink.Logger log,
+      Map<String, String> entitiesBundle) {
+    // Fetch Dialog Nodes
+    System.out.println("\n");
+    System.out.println("*** Updating Dialog on WCS with Translatable Contents ***");
+    JsonArray dialogNodes = jsonResponseObject.getAsJsonArray("dialog_nodes");
+    List<TranslatableUnit> units = content.getUnits(Section.DIALOGS);
+    // Use keys the way the bundles were written
+    String[] unitKeys = keys(Section.DIALOGS, ResourceKeys.detect(dialogMap.keySet()));
+    // Entity values in conditions are matched against the entities bundle
+    ConditionRewriter conditions = new ConditionRewriter(entitiesBundle);
+    JsonObject dialogNodeObj = null;
+    JsonArray textArrayToBeReplaced = new JsonArray();
+    Kind textKind = null;
+    int group = -1;
+    for (int u = 0; u < unitKeys.length; u++) {
+      TranslatableUnit unit = units.get(u);
+      if (unit.getGroup() != group) {
+        replaceTexts(dialogNodeObj, textKind, textArrayToBeReplaced);
+        textArrayToBeReplaced = new JsonArray();
+        textKind = null;
+        group = unit.getGroup();
+        dialogNodeObj = dialogNodes.get(group).getAsJsonObject();
+      }
+      if (unit.getKind() == Kind.DIALOG_CONDITION) {
+        dialogNodeObj.addProperty("conditions", conditions.rewrite(unit.getText(), log));
+        continue;
+      }
+      String keyTobeInserted = dialogMap.get(unitKeys[u]);
+      if (unit.getKind() != Kind.DIALOG_TEXT) {
+        // Text array and text values are replaced with their translations
+        textKind = unit.getKind();
+      }
+      if (keyTobeInserted != null) {
+        if (!keyTobeInserted.isEmpty()) {
+          if (unit.getKind() == Kind.DIALOG_TEXT) {
+            dialogNodeObj.getAsJsonObject("output").addProperty("text", keyTobeInserted);
+          } else {
+            textArrayToBeReplaced.add(keyTobeInserted);
+          }
+        } else {
+          log.log(unit.getKind(), unitKeys[u], unit.getText(), Reason.NOT_TRANSLATED);
+        }
+      }
+    }
+    replaceTexts(dialogNodeObj, textKind, textArrayToBeReplaced);
+    System.out.println("    Dialog Nodes Updated");
+  }
+
+  /***
+   * Drop duplicate elements of an array in one pass, the array is replaced
+   * by a copy without them
+   * 
+   * @param parent
+   * @param name
+   * @param removeElements
+   *          indices of the elements to drop, cleared afterwards
+   */
+  private static void removeElements(JsonObject parent, String name, BitSet removeElements) {
+    if (removeElements.isEmpty()) {
+      return;
+    }
+    JsonArray array = parent.getAsJsonArray(name);
+    JsonArray kept = new JsonArray(array.size() - removeElements.cardinality());
+    for (int i = 0; i < array.size(); i++) {
+      if (!removeElements.get(i)) {
+        kept.add(array.get(i));
+      }
+    }
+    parent.add(name, kept);
+    removeElements.clear();
+  }
+
+  // Only translated synonyms are kept
+  private static void replaceSynonyms(JsonObject entityValObj, JsonArray entitySet) {
+    if (entityValObj != null && entitySet.size() > 0) {
+      entityValObj.add("synonyms", entitySet);
+    }
+  }
+
+  /***
+   * Replace output text array with its translated texts if any, output text
+   * values are always replaced
+   * 
+   * @param dialogNodeObj
+   * @param textKind
+   * @param textArrayToBeReplaced
+   */
+  private static void replaceTexts(JsonObject dialogNodeObj, Kind textKind, JsonArray textArrayToBeReplaced) {
+    if (textKind == Kind.DIALOG_TEXT_ARRAY) {
+      if (textArrayToBeReplaced.size() > 0) {
+        dialogNodeObj.getAsJsonObject("output").add("text", textArrayToBeReplaced);
+      }
+    } else if (textKind == Kind.DIALOG_TEXT_VALUES) {
+      JsonObject jsonTextObj = dialogNodeObj.getAsJsonObject("output").getAsJsonObject("text");
+      jsonTextObj.remove("values");
+      jsonTextObj.add("values", textArrayToBeReplaced);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import com.beust.jcommander.Parameter;
+
+/***
+ * WCS transport options, shared by WCS_To_GP and GP_To_WCS and by the
+ * commands running several workspaces in one JVM, which configure the
+ * transport once for all of them
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class TransportOptions {
+
+  @Parameter(names = { "--connectTimeout" }, description = "WCS API connect timeout in milliseconds")
+  private int connectTimeout = WCSUtils.CONNECT_TIMEOUT;
+
+  @Parameter(names = { "--readTimeout" }, description = "WCS API read timeout in milliseconds")
+  private int readTimeout = WCSUtils.READ_TIMEOUT;
+
+  @Parameter(names = { "--gzipRequests" }, description = "Send gzip compressed request bodies to WCS API")
+  private boolean gzipRequests;
+
+  @Parameter(names = {
+      "--requestChunkSize" }, description = "Size in bytes of the chunks request bodies are streamed to WCS API in")
+  private int requestChunkSize = WCSUtils.REQUEST_CHUNK_SIZE;
+
+  @Parameter(names = {
+      "--maxConnections" }, description = "Maximum idle keep-alive connections kept per WCS host")
+  private Integer maxConnections;
+
+  @Parameter(names = { "--wcsUrl" }, description = "Base URL of the WCS API, up to and without /workspaces")
+  private String wcsUrl = WCSUtils.API_URL;
+
+  /***
+   * Set up the pooled HTTP transport used for all WCS API calls
+   *
+   * @param metrics
+   *          metrics recording the calls
+   */
+  void configure(RunMetrics metrics) {
+    if (maxConnections != null) {
+      // Read by the JDK keep-alive cache, must be set before the first
+      // connection is opened
+      System.setProperty("http.maxConnections", maxConnections.toString());
+    }
+    WCSUtils.setTransport(new MeteredTransport(new HttpURLConnectionTransport(connectTimeout, readTimeout,
+        gzipRequests, requestChunkSize), metrics));
+    WCSUtils.setApiUrl(wcsUrl);
+  }
+}
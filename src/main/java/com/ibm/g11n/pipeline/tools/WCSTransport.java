@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/***
+ * HTTP transport used by {@link WCSUtils} to talk to the Watson Conversation
+ * API
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+interface WCSTransport {
+
+  /***
+   * Response of a WCS API call. The body must be closed so that the underlying
+   * connection can be reused
+   */
+  interface Response extends Closeable {
+    int getCode();
+
+    /***
+     * Decoded response body
+     * 
+     * @return body
+     * @throws IOException
+     */
+    InputStream getBody() throws IOException;
+  }
+
+  /***
+   * Request body written straight into the connection, so the payload never
+   * has to be materialized as a String or byte array
+   */
+  interface RequestBody {
+    /***
+     * Write the body. The stream is closed by the transport
+     * 
+     * @param out
+     * @throws IOException
+     */
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  /***
+   * GET url
+   * 
+   * @param url
+   * @param authorizationHeader
+   * @return response
+   * @throws IOException
+   */
+  Response get(String url, String authorizationHeader) throws IOException;
+
+  /***
+   * POST JSON body to url. The body is streamed with chunked transfer encoding
+   * 
+   * @param url
+   * @param authorizationHeader
+   * @param jsonBody
+   * @return response
+   * @throws IOException
+   */
+  Response post(String url, String authorizationHeader, RequestBody jsonBody) throws IOException;
+}
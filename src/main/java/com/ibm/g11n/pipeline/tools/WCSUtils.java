@@ -16,17 +16,40 @@
 
 package com.ibm.g11n.pipeline.tools;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.Map.Entry;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 /***
  * Utils class to GET or POST Watson Conversation Workspace
@@ -38,6 +61,82 @@ final class WCSUtils {
 
   public final static int READ_TIMEOUT = 10000;
   public final static int CONNECT_TIMEOUT = 15000;
+  public final static int REQUEST_CHUNK_SIZE = 8192;
+
+  // Maximum length of a response value echoed to stdout
+  private final static int SUMMARY_VALUE_LENGTH = 200;
+
+  // Same output as JsonElement.toString()
+  private final static Gson PAYLOAD_GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
+  // WCS API URL
+  public final static String API_URL = "https://watson-api-explorer.mybluemix.net/conversation/api/v1";
+  private final static String CONVERSATION_API_URL = "%s/workspaces/%s?version=%s&export=true";
+  private final static String POST_WCS_API_URL = "%s/workspaces?version=%s";
+  private final static String UPDATE_WCS_API_URL = "%s/workspaces/%s?version=%s";
+  private final static String METADATA_API_URL = "%s/workspaces/%s?version=%s";
+
+  private static volatile String apiUrl = API_URL;
+
+  private static volatile WCSTransport transport = new HttpURLConnectionTransport(CONNECT_TIMEOUT, READ_TIMEOUT,
+      false, REQUEST_CHUNK_SIZE);
+
+  /***
+   * Callback reading a workspace directly from the response stream
+   */
+  interface WorkspaceStreamHandler {
+    void read(JsonReader reader) throws IOException;
+  }
+
+  /***
+   * Replace the transport used for all WCS API calls
+   * 
+   * @param wcsTransport
+   */
+  static void setTransport(WCSTransport wcsTransport) {
+    transport = wcsTransport;
+  }
+
+  static WCSTransport getTransport() {
+    return transport;
+  }
+
+  /***
+   * Replace the base URL of the WCS API, for instance with a local stand-in
+   * 
+   * @param wcsApiUrl
+   *          URL up to and without /workspaces
+   */
+  static void setApiUrl(String wcsApiUrl) {
+    apiUrl = wcsApiUrl.endsWith("/") ? wcsApiUrl.substring(0, wcsApiUrl.length() - 1) : wcsApiUrl;
+  }
+
+  /***
+   * Deep copy of a JSON tree, used to translate the same workspace into
+   * several languages
+   * 
+   * @param element
+   * @return copy
+   */
+  static JsonElement deepCopy(JsonElement element) {
+    if (element.isJsonObject()) {
+      JsonObject copy = new JsonObject();
+      for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        copy.add(entry.getKey(), deepCopy(entry.getValue()));
+      }
+      return copy;
+    }
+    if (element.isJsonArray()) {
+      JsonArray array = element.getAsJsonArray();
+      JsonArray copy = new JsonArray(array.size());
+      for (JsonElement item : array) {
+        copy.add(deepCopy(item));
+      }
+      return copy;
+    }
+    // primitives and null are immutable
+    return element;
+  }
 
   /***
    * GET Call to get workspace from WCS
@@ -46,64 +145,184 @@ final class WCSUtils {
    * @param workspaceId
    * @param versionDate
    * @return
+   * @throws WCSWorkspaceException
+   *           if the workspace could not be fetched
    */
-  public static JsonObject getWCSWorkspace(String wcsCreds, String workspaceId, String versionDate) {
-    // WCS API URL
-    String CONVERSATION_API_URL = "https://watson-api-explorer.mybluemix.net/conversation/api/v1/workspaces/%s?version=%s&export=true";
-
+  public static JsonObject getWCSWorkspace(String wcsCreds, String workspaceId, String versionDate)
+      throws WCSWorkspaceException {
     // Encode username and Password to Base64 using Basic Auth for WCS API
     String authorizationHeader = "Basic "
         + Base64.getEncoder().encodeToString((wcsCreds).getBytes(StandardCharsets.UTF_8));
 
-    String urlStr = String.format(CONVERSATION_API_URL, workspaceId, versionDate);
+    String urlStr = String.format(CONVERSATION_API_URL, apiUrl, workspaceId, versionDate);
     System.out.println("GET " + urlStr);
-    BufferedReader in = null;
-    JsonObject jsonResponseObject = new JsonObject();
-
-    try {
-      URL targetWCSUrl = new URL(urlStr);
-      HttpURLConnection conn = (HttpURLConnection) targetWCSUrl.openConnection();
-      conn.setRequestMethod("GET");
-      conn.setReadTimeout(READ_TIMEOUT);
-      conn.setConnectTimeout(CONNECT_TIMEOUT);
-      conn.setRequestProperty("Authorization", authorizationHeader);
 
+    try (WCSTransport.Response response = transport.get(urlStr, authorizationHeader)) {
       // receiving response
-      int responseCode = conn.getResponseCode();
+      int responseCode = response.getCode();
       System.out.println("Response Code : " + responseCode);
 
       if (responseCode == 200) {
-        in = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
-
-        while ((inputLine = in.readLine()) != null) {
-          response.append(inputLine);
-        }
-        in.close();
-
         // parse and store as JSON
         JsonParser responseBodyParser = new JsonParser();
-        jsonResponseObject = (JsonObject) responseBodyParser.parse(response.toString());
+        return responseBodyParser.parse(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))
+            .getAsJsonObject();
+      } else {
+        System.out.println("\n\n");
+        System.out.println("Failed to communicate to WCS API endpoint " + responseCode);
+        throw new WCSWorkspaceException(
+            "WCS answered " + responseCode + ", please check your WCS Credentials and Command Line Arguments");
+      }
+    } catch (IOException | JsonParseException | IllegalStateException e) {
+      throw new WCSWorkspaceException("Failed to read WCS Workspace " + workspaceId, e);
+    }
+  }
+
+  /***
+   * GET Call to stream workspace from WCS. The response body is handed to the
+   * handler as it arrives and is never held in memory as a whole
+   * 
+   * @param wcsCreds
+   * @param workspaceId
+   * @param versionDate
+   * @param handler
+   * @throws WCSWorkspaceException
+   */
+  public static void streamWCSWorkspace(String wcsCreds, String workspaceId, String versionDate,
+      WorkspaceStreamHandler handler) throws WCSWorkspaceException {
+    // Encode username and Password to Base64 using Basic Auth for WCS API
+    String authorizationHeader = "Basic "
+        + Base64.getEncoder().encodeToString((wcsCreds).getBytes(StandardCharsets.UTF_8));
+
+    String urlStr = String.format(CONVERSATION_API_URL, apiUrl, workspaceId, versionDate);
+    System.out.println("GET " + urlStr);
 
+    try (WCSTransport.Response response = transport.get(urlStr, authorizationHeader)) {
+      // receiving response
+      int responseCode = response.getCode();
+      System.out.println("Response Code : " + responseCode);
+
+      if (responseCode == 200) {
+        JsonReader reader = new JsonReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+        handler.read(reader);
       } else {
         System.out.println("\n\n");
         System.out.println("Failed to communicate to WCS API endpoint " + responseCode);
         throw new WCSWorkspaceException("Please check your WCS Credentials and Command Line Arguments");
       }
-    } catch (Exception e) {
-      e.printStackTrace();
-    } finally {
-      // close the reader
-      if (in != null) {
-        try {
-          in.close();
-        } catch (IOException ioe) {
-          ioe.printStackTrace();
+    } catch (IOException e) {
+      throw new WCSWorkspaceException("Failed to read WCS Workspace " + workspaceId, e);
+    }
+  }
+
+  /***
+   * GET Call to fingerprint a workspace without exporting it. Without
+   * export=true WCS only returns the workspace metadata (name, language,
+   * description and timestamps), a few hundred bytes whatever the size of the
+   * workspace. The updated timestamp changes on every edit of the workspace;
+   * if the service does not return one the metadata is hashed instead
+   * 
+   * @param wcsCreds
+   * @param workspaceId
+   * @param versionDate
+   * @return fingerprint, equal for two calls only if the workspace did not change
+   * @throws WCSWorkspaceException
+   */
+  static String getWorkspaceFingerprint(String wcsCreds, String workspaceId, String versionDate)
+      throws WCSWorkspaceException {
+    // Encode username and Password to Base64 using Basic Auth for WCS API
+    String authorizationHeader = "Basic "
+        + Base64.getEncoder().encodeToString((wcsCreds).getBytes(StandardCharsets.UTF_8));
+
+    String urlStr = String.format(METADATA_API_URL, apiUrl, workspaceId, versionDate);
+    try (WCSTransport.Response response = transport.get(urlStr, authorizationHeader)) {
+      int responseCode = response.getCode();
+      if (responseCode != 200) {
+        throw new WCSWorkspaceException(
+            "Failed to get metadata of WCS Workspace " + workspaceId + ", response code " + responseCode);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      InputStream in = response.getBody();
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      String metadata = new String(out.toByteArray(), StandardCharsets.UTF_8);
+      JsonElement updated = new JsonParser().parse(metadata).getAsJsonObject().get("updated");
+      if (updated != null && updated.isJsonPrimitive()) {
+        return "updated:" + updated.getAsString();
+      }
+      return "hash:" + SyncState.hash(metadata);
+    } catch (IOException | JsonParseException | IllegalStateException e) {
+      throw new WCSWorkspaceException("Failed to get metadata of WCS Workspace " + workspaceId, e);
+    }
+  }
+
+  /***
+   * Read a workspace exported to a file, as returned by the WCS export API
+   * 
+   * @param path
+   * @return workspace
+   * @throws WCSWorkspaceException
+   */
+  static JsonObject readWorkspaceFile(String path) throws WCSWorkspaceException {
+    final JsonObject[] workspace = new JsonObject[1];
+    streamWorkspaceFile(path, new WorkspaceStreamHandler() {
+      @Override
+      public void read(JsonReader reader) throws IOException {
+        JsonElement element = new JsonParser().parse(reader);
+        if (!element.isJsonObject()) {
+          throw new IOException("Not a workspace object");
         }
+        workspace[0] = element.getAsJsonObject();
+      }
+    });
+    return workspace[0];
+  }
+
+  /***
+   * Hand a workspace file to the handler. The file is memory mapped and decoded
+   * straight from the mapping, so it is never copied to the heap as bytes and
+   * no network call is made
+   * 
+   * @param path
+   * @param handler
+   * @throws WCSWorkspaceException
+   */
+  static void streamWorkspaceFile(String path, WorkspaceStreamHandler handler) throws WCSWorkspaceException {
+    System.out.println("Reading workspace from " + path);
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      JsonReader reader = new JsonReader(new ByteBufferReader(mapped));
+      handler.read(reader);
+    } catch (IOException | JsonParseException e) {
+      throw new WCSWorkspaceException("Failed to read workspace file " + path, e);
+    }
+  }
+
+  /***
+   * Write a workspace to a file instead of posting it to WCS. The file is
+   * indented so that it can be kept under version control, and is replaced
+   * only once completely written
+   * 
+   * @param path
+   * @param jsonWCSPayload
+   * @throws IOException
+   */
+  static void writeWorkspaceFile(String path, JsonObject jsonWCSPayload) throws IOException {
+    Path target = Paths.get(path).toAbsolutePath();
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+        writer.setIndent("  ");
+        PAYLOAD_GSON.toJson(jsonWCSPayload, writer);
       }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
     }
-    return jsonResponseObject;
+    System.out.println("\n \n*** Workspace written to " + path + " ***");
   }
 
   /***
@@ -114,83 +333,163 @@ final class WCSUtils {
    * @param versionDate
    * @param jsonWCSPayload
    * @throws IOException 
+   * @throws WCSWorkspaceException
+   *           if WCS rejected the workspace
    */
   public static void putWCSWorkspace(String targetWorkspaceId, String authorizationHeader, String versionDate,
-      JsonObject jsonWCSPayload) throws IOException {
-
-    String POST_WCS_API_URL = "https://watson-api-explorer.mybluemix.net/conversation/api/v1/workspaces?version=%s";
-    String UPDATE_WCS_API_URL = "https://watson-api-explorer.mybluemix.net/conversation/api/v1/workspaces/%s?version=%s";
+      final JsonObject jsonWCSPayload) throws IOException, WCSWorkspaceException {
 
     String urlStr = null;
+    int expectedCode;
     if (targetWorkspaceId == null) {
       // Create new workspace on WCS
-      urlStr = String.format(POST_WCS_API_URL, versionDate);
+      urlStr = String.format(POST_WCS_API_URL, apiUrl, versionDate);
+      expectedCode = 201;
       System.out.println("\n \n*** POST new WCS Workspace ***");
     } else {
       // update already existing WCS workspace
-      urlStr = String.format(UPDATE_WCS_API_URL, targetWorkspaceId, versionDate);
+      urlStr = String.format(UPDATE_WCS_API_URL, apiUrl, targetWorkspaceId, versionDate);
+      expectedCode = 200;
       System.out.println("\n \n*** UPDATE existing WCS Workspace ***");
     }
 
     System.out.println("POST " + urlStr);
-    BufferedReader br = null;
-    try {
-      URL targetWCSUrl = new URL(urlStr);
-      HttpURLConnection conn = (HttpURLConnection) targetWCSUrl.openConnection();
-      conn.setReadTimeout(READ_TIMEOUT);
-      conn.setConnectTimeout(CONNECT_TIMEOUT);
-      conn.setDoOutput(true);
-      conn.setDoInput(true);
-      conn.setRequestMethod("POST");
-      conn.setRequestProperty("Authorization", authorizationHeader);
-      conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-
-      String jsonPayload = jsonWCSPayload.toString();
-      OutputStream os = conn.getOutputStream();
-      os.write(jsonPayload.getBytes(StandardCharsets.UTF_8));
-      os.flush();
-      os.close();
-
-      int resCode = conn.getResponseCode();
+    final CountingOutputStream[] sent = new CountingOutputStream[1];
+    WCSTransport.RequestBody body = new WCSTransport.RequestBody() {
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        sent[0] = new CountingOutputStream(out);
+        JsonWriter writer = new JsonWriter(
+            new BufferedWriter(new OutputStreamWriter(sent[0], StandardCharsets.UTF_8), REQUEST_CHUNK_SIZE));
+        PAYLOAD_GSON.toJson(jsonWCSPayload, writer);
+        writer.flush();
+      }
+    };
+    try (WCSTransport.Response response = transport.post(urlStr, authorizationHeader, body)) {
+      int resCode = response.getCode();
+      if (sent[0] != null) {
+        System.out.println("Request body: " + sent[0].getCount() + " bytes");
+      }
       System.out.println("Response Code: " + resCode);
-      if (targetWorkspaceId == null) {
-        if (resCode == 201) {
-          br = new BufferedReader(new InputStreamReader((conn.getInputStream())));
-          String output;
-          System.out.println("\n Output from WCS .... \n");
-          while ((output = br.readLine()) != null) {
-            System.out.println(output);
-          }
-        } else {
-          System.out.println("\n");
-          System.out.println("Failed to communicate to WCS API endpoint " + resCode);
-          throw new WCSWorkspaceException("Please check your WCS Credentials and JSON Payload");
+      if (resCode == expectedCode) {
+        System.out.println("\n Output from WCS .... \n");
+        try {
+          printResponseSummary(response);
+        } catch (IOException | RuntimeException e) {
+          // The workspace was posted, the summary is informational only
+          System.out.println("Unable to read the response summary: " + e.getMessage());
         }
       } else {
-        if (resCode == 200) {
-          br = new BufferedReader(new InputStreamReader((conn.getInputStream())));
-          String output;
-          System.out.println("\n Output from WCS .... \n");
-          while ((output = br.readLine()) != null) {
-            System.out.println(output);
-          }
-        } else {
-          System.out.println("\n");
-          System.out.println("Failed to communicate to WCS API endpoint " + resCode);
-          throw new WCSWorkspaceException("Please check your WCS Credentials and JSON Payload");
-        }
+        System.out.println("\n");
+        System.out.println("Failed to communicate to WCS API endpoint " + resCode);
+        throw new WCSWorkspaceException(
+            "WCS answered " + resCode + ", please check your WCS Credentials and JSON Payload");
       }
-    } catch (WCSWorkspaceException e) {
-      e.printStackTrace();
-    } finally {
-      // close the reader
-      if (br != null) {
-        try {
-          br.close();
-        } catch (IOException ioe) {
-          ioe.printStackTrace();
+    }
+  }
+
+  /***
+   * Print the top level fields of the workspace returned by WCS. Nested
+   * intents, entities and dialog nodes are skipped and only counted, so the
+   * output does not grow with the workspace. Objects and nulls are skipped
+   * 
+   * @param response
+   * @throws IOException
+   */
+  private static void printResponseSummary(WCSTransport.Response response) throws IOException {
+    JsonReader reader = new JsonReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+    reader.setLenient(true);
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      JsonToken token = reader.peek();
+      if (token == JsonToken.BEGIN_ARRAY) {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+          reader.skipValue();
+          count++;
+        }
+        reader.endArray();
+        System.out.println(name + ": [" + count + "]");
+      } else if (token == JsonToken.BOOLEAN) {
+        System.out.println(name + ": " + reader.nextBoolean());
+      } else if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+        String value = reader.nextString();
+        if (value.length() > SUMMARY_VALUE_LENGTH) {
+          value = value.substring(0, SUMMARY_VALUE_LENGTH) + "...";
         }
+        System.out.println(name + ": " + value);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  // Decodes UTF-8 straight from a byte buffer, skipping a byte order mark
+  private static final class ByteBufferReader extends Reader {
+    private final ByteBuffer in;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean flushed;
+
+    ByteBufferReader(ByteBuffer in) {
+      this.in = in;
+      if (in.remaining() >= 3 && (in.get(0) & 0xFF) == 0xEF && (in.get(1) & 0xFF) == 0xBB
+          && (in.get(2) & 0xFF) == 0xBF) {
+        in.position(3);
       }
     }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+      CoderResult result = decoder.decode(in, out, true);
+      if (result.isError()) {
+        result.throwException();
+      }
+      if (!in.hasRemaining() && !flushed && decoder.flush(out).isUnderflow()) {
+        flushed = true;
+      }
+      int count = out.position() - off;
+      return count == 0 && flushed ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  // Counts the uncompressed bytes of a request body
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    long getCount() {
+      return count;
+    }
   }
 }
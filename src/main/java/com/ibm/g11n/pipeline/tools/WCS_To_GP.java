@@ -17,19 +17,27 @@
 package com.ibm.g11n.pipeline.tools;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.Map.Entry;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
+import com.beust.jcommander.Parameter;
 import com.google.gson.JsonObject;
 import com.ibm.g11n.pipeline.client.BundleData;
 import com.ibm.g11n.pipeline.client.BundleDataChangeSet;
@@ -37,6 +45,7 @@ import com.ibm.g11n.pipeline.client.NewBundleData;
 import com.ibm.g11n.pipeline.client.NewResourceEntryData;
 import com.ibm.g11n.pipeline.client.ServiceClient;
 import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
 
 /***
  * Watson Converstaion to Globalization Pipeline Utility
@@ -46,29 +55,391 @@ import com.ibm.g11n.pipeline.client.ServiceException;
  */
 public class WCS_To_GP extends BaseUtility {
 
+  @Parameter(names = { "--streaming" }, description = "Extract translatable content while streaming the WCS workspace"
+      + " instead of loading it in memory")
+  private boolean streaming;
+
+  @Parameter(names = { "--uploadThreads" }, description = "Number of bundles created and uploaded in parallel")
+  private int uploadThreads = 1;
+
+  @Parameter(names = {
+      "--syncState" }, description = "File recording what was synchronized to GP, used to skip unchanged bundles")
+  private String syncStateFile;
+
+  @Parameter(names = { "--maxBundleKeys" }, description = "Maximum number of resource strings per bundle")
+  private int maxBundleKeys = BundleSplitter.MAX_KEYS;
+
+  @Parameter(names = {
+      "--maxBundleBytes" }, description = "Maximum estimated size in bytes of the resource strings of a bundle")
+  private long maxBundleBytes = BundleSplitter.MAX_BYTES;
+
+  @Parameter(names = { "--keyScheme" }, description = "Resource key scheme of new bundles: 1 (legacy 32-bit hash,"
+      + " default) or 2 (64-bit hash). Existing bundles keep the scheme they were written with unless --rekey is given")
+  private Integer keyScheme;
+
+  @Parameter(names = { "--rekey" }, description = "Re-key existing bundles to --keyScheme. All their resource strings"
+      + " are deleted and uploaded again and their translations are lost")
+  private boolean rekey;
+
+  @Parameter(names = {
+      "--extractThreads" }, description = "Number of threads extracting translatable content from the workspace")
+  private int extractThreads = 1;
+
+  @Parameter(names = { "--watch" }, description = "Keep running and synchronize again whenever the source workspace"
+      + " changes, until stopped")
+  private boolean watch;
+
+  @Parameter(names = {
+      "--watchInterval" }, description = "Seconds between two checks of the source workspace in watch mode")
+  private int watchInterval = 60;
+
+  @Parameter(names = { "--watchQuietPeriod" }, description = "Seconds the source workspace must stay unchanged"
+      + " before it is synchronized in watch mode, so that a burst of edits is synchronized once")
+  private int watchQuietPeriod = 30;
+
+  // Source language of the workspace, also the source language of its bundles
+  private String sourceLanguage;
+
+  private SyncState syncState;
+
+  private BundleSplitter splitter;
+
+  private ResourceKeys resourceKeys;
+
+  // Minutes the shutdown hook waits for a sync in progress in watch mode
+  private static final int SHUTDOWN_WAIT_MINUTES = 5;
+
+  // Set by the shutdown hook to end watch mode, guarded by watchLock
+  private final Object watchLock = new Object();
+  private boolean stopWatching;
+
   @Override
   public void _execute() throws Exception {
 
-    setSplitSize(300);
+    splitter = new BundleSplitter(maxBundleKeys, maxBundleBytes);
+    if (keyScheme != null && keyScheme != ResourceKeys.LEGACY && keyScheme != ResourceKeys.V2) {
+      throw new WCSWorkspaceException("--keyScheme must be " + ResourceKeys.LEGACY + " or " + ResourceKeys.V2);
+    }
+    if (rekey && keyScheme == null) {
+      throw new WCSWorkspaceException("--rekey requires the new --keyScheme");
+    }
+
+    if (watch) {
+      watch();
+    } else {
+      syncOnce();
+    }
+  }
+
+  /***
+   * Synchronize the workspace to GP once, loading and saving the sync state
+   * 
+   * @throws Exception
+   */
+  private void syncOnce() throws Exception {
+    if (syncStateFile != null) {
+      syncState = SyncState.load(syncStateFile);
+    }
+    sync();
+
+    if (syncState != null) {
+      // Only reached when the whole run succeeded
+      syncState.save(syncStateFile);
+      System.out.println("Saved sync state to " + syncStateFile);
+    }
+  }
+
+  /***
+   * Synchronize the workspace, then check its metadata every watch interval
+   * and synchronize it again when it changed. Checks only read the workspace
+   * metadata (or the modification time of the input file), not the export of
+   * the workspace nor the GP bundles. A change is synchronized once the
+   * workspace stayed unchanged for the quiet period. Runs until the JVM is
+   * shut down; a sync in progress is completed first
+   * 
+   * @throws Exception
+   */
+  private void watch() throws Exception {
+    if (watchInterval < 1 || watchQuietPeriod < 0) {
+      throw new WCSWorkspaceException("--watchInterval must be at least 1 and --watchQuietPeriod at least 0");
+    }
+    final Thread watcher = Thread.currentThread();
+    Thread shutdownHook = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        // Wakes the watcher up if it is waiting, a sync in progress is not
+        // interrupted
+        synchronized (watchLock) {
+          stopWatching = true;
+          watchLock.notifyAll();
+        }
+        try {
+          // Let the watcher save the sync state and the metrics
+          watcher.join(TimeUnit.MINUTES.toMillis(SHUTDOWN_WAIT_MINUTES));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, "watch-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    try {
+      watchLoop();
+    } catch (InterruptedException e) {
+      // Interrupted while waiting for the next check
+    } finally {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // Already shutting down
+      }
+    }
+    System.out.println("Stopped watching " + watchedName());
+  }
+
+  private void watchLoop() throws Exception {
+    System.out.println("Watching " + watchedName() + " every " + watchInterval + " s, quiet period "
+        + watchQuietPeriod + " s");
+    // Fingerprint taken before the sync, so that edits made during the sync
+    // are seen by the next check
+    String fingerprint = fingerprint();
+    String synced = syncCycle() ? fingerprint : null;
+    while (pause(watchInterval)) {
+      fingerprint = fingerprint();
+      if (fingerprint == null || fingerprint.equals(synced)) {
+        continue;
+      }
+      System.out.println("\n" + watchedName() + " changed (" + fingerprint + ")");
+      // Coalesce a burst of edits into one sync
+      if (watchQuietPeriod > 0) {
+        System.out.println("Waiting for " + watchQuietPeriod + " s without further change");
+        while (true) {
+          if (!pause(watchQuietPeriod)) {
+            return;
+          }
+          String latest = fingerprint();
+          if (fingerprint.equals(latest)) {
+            break;
+          }
+          if (latest != null) {
+            fingerprint = latest;
+          }
+        }
+      }
+      if (syncCycle()) {
+        synced = fingerprint;
+      }
+    }
+  }
+
+  /***
+   * Wait in watch mode
+   * 
+   * @param seconds
+   * @return false if watch mode was stopped
+   * @throws InterruptedException
+   */
+  private boolean pause(int seconds) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    synchronized (watchLock) {
+      long remaining;
+      while (!stopWatching && (remaining = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(watchLock, remaining);
+      }
+      return !stopWatching;
+    }
+  }
+
+  /***
+   * One sync of watch mode. Failures are reported and the sync is retried at
+   * the next check. The metrics files are written after every sync, with the
+   * duration and outcome of the sync and the phases of this sync only
+   * 
+   * @return true if the workspace was synchronized
+   */
+  private boolean syncCycle() {
+    RunMetrics metrics = getMetrics();
+    metrics.startSync();
+    long start = System.nanoTime();
+    boolean synced = false;
+    try {
+      // Bundles may have been changed on GP since the last sync
+      getGPSession().clearCaches();
+      syncOnce();
+      synced = true;
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    long nanos = System.nanoTime() - start;
+    metrics.finishSync(synced, nanos);
+    System.out.println((synced ? "Synchronized " : "Failed to synchronize ") + watchedName() + " in "
+        + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+    exportMetrics();
+    return synced;
+  }
+
+  /***
+   * Cheap fingerprint of the source workspace: its metadata on WCS, or the
+   * modification time and size of the input file
+   * 
+   * @return fingerprint, null if the check failed
+   */
+  private String fingerprint() {
+    try {
+      if (getInputFile() != null) {
+        Path path = Paths.get(getInputFile());
+        return "modified:" + Files.getLastModifiedTime(path).toMillis() + ":" + Files.size(path);
+      }
+      return WCSUtils.getWorkspaceFingerprint(getWCSCreds(), getSourceworkspaceId(), getVersionDate());
+    } catch (IOException | WCSWorkspaceException e) {
+      System.out.println("Unable to check " + watchedName() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private String watchedName() {
+    return getInputFile() != null ? "input file " + getInputFile() : "workspace " + getSourceworkspaceId();
+  }
+
+  /***
+   * Extract translatable content from WCS and synchronize it to GP
+   * 
+   * @throws Exception
+   */
+  private void sync() throws Exception {
+    // Extract with fork join tasks on large workspaces
+    ForkJoinPool pool = extractThreads > 1 ? new ForkJoinPool(extractThreads) : null;
+    try {
+      sync(pool);
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private void sync(ForkJoinPool pool) throws Exception {
 
-    // Get Workspace in JSON format from WCS API
-    JsonObject jsonWCSPayload = getConvWorkspace();
+    RunMetrics metrics = getMetrics();
+    TranslatableContent content;
+    long start = System.nanoTime();
+    if (streaming) {
+      // Extract translatable content straight off the WCS API response
+      content = streamConvWorkspace().getContent();
+      metrics.addPhase("fetch_extract", System.nanoTime() - start);
+    } else {
+      // Get Workspace in JSON format from WCS API
+      JsonObject jsonWCSPayload = getConvWorkspace();
+      metrics.addPhase("fetch_workspace", System.nanoTime() - start);
+      if (jsonWCSPayload.size() == 0) {
+        throw new WCSWorkspaceException("No Workspace retrieved from WCS");
+      }
+      // Extract Intents, Entities and Dialogs in one pass
+      start = System.nanoTime();
+      content = WorkspaceExtractor.extract(jsonWCSPayload, pool);
+      metrics.addPhase("extract", System.nanoTime() - start);
+    }
+    metrics.addExtracted(content);
 
-    if (jsonWCSPayload.size() > 0) {
-      // Parse Intents and store it in Intents TreeMap
-      Map<String, TreeSet<String>> uniqueBotOutputIntents = parseWCSIntents(jsonWCSPayload);
+    // Get source Language from WCS JSON Payload
+    String language = content.getLanguage();
+    if (language == null) {
+      throw new WCSWorkspaceException("No Language Specified in WCS");
+    }
 
-      // Parse Intents and store it in Entities TreeMap
-      Map<String, TreeSet<String>> uniqueBotOutputEntities = parseWCSEntities(jsonWCSPayload);
+    start = System.nanoTime();
+    resourceKeys = new ResourceKeys(resolveKeyScheme(language));
+    metrics.addPhase("key_scheme", System.nanoTime() - start);
+
+    start = System.nanoTime();
+    Map<String, TreeSet<String>> uniqueBotOutputIntents = toResourceMap(content, Section.INTENTS, pool);
+    Map<String, TreeSet<String>> uniqueBotOutputEntities = toResourceMap(content, Section.ENTITIES, pool);
+    Map<String, TreeSet<String>> uniqueBotOutputDialogs = toResourceMap(content, Section.DIALOGS, pool);
+    metrics.addPhase("resource_keys", System.nanoTime() - start);
+    System.out.println("   Fetched Intents -> " + uniqueBotOutputIntents.size());
+    System.out.println("   Fetched Entities -> " + uniqueBotOutputEntities.size());
+    System.out.println("   Fetched Dialog Nodes -> " + uniqueBotOutputDialogs.size());
+
+    // Create bundles on GP and upload resource string to bundles
+    start = System.nanoTime();
+    try {
+      createBundles(uniqueBotOutputIntents, uniqueBotOutputEntities, uniqueBotOutputDialogs, language);
+    } finally {
+      metrics.addPhase("sync_gp", System.nanoTime() - start);
+    }
+  }
 
-      // Parse Intents and store it in Dialogs TreeMap
-      Map<String, TreeSet<String>> uniqueBotOutputDialogs = parseWCSDialogs(jsonWCSPayload);
+  /***
+   * Key scheme of this sync. Existing intents and dialogs bundles keep the
+   * scheme they were written with: another scheme changes every key, so all
+   * their resource strings would be deleted and uploaded again and their
+   * translations lost. --keyScheme applies to new bundles, and to existing
+   * ones only with --rekey
+   * 
+   * @param language
+   *          source language of the bundles
+   * @return scheme
+   * @throws ServiceException
+   * @throws WCSWorkspaceException
+   *           if --keyScheme does not match the existing bundles
+   */
+  private int resolveKeyScheme(String language) throws ServiceException, WCSWorkspaceException {
+    Integer existing = existingKeyScheme(language);
+    if (existing == null) {
+      return keyScheme != null ? keyScheme : ResourceKeys.LEGACY;
+    }
+    if (keyScheme == null || keyScheme.intValue() == existing.intValue()) {
+      System.out.println("Using key scheme " + existing + " of the existing bundles");
+      return existing;
+    }
+    if (!rekey) {
+      throw new WCSWorkspaceException("Existing bundles use key scheme " + existing + ", not " + keyScheme
+          + ". Re-keying deletes and uploads again all their resource strings and loses their translations,"
+          + " add --rekey to do it");
+    }
+    System.out.println("Re-keying existing bundles from key scheme " + existing + " to " + keyScheme);
+    return keyScheme;
+  }
 
-      int splitSize = getSplitSize();
-      // Create bundles on GP and upload resource string to bundles
-      createBundles(uniqueBotOutputIntents, uniqueBotOutputEntities, uniqueBotOutputDialogs, splitSize, jsonWCSPayload);
+  /***
+   * Key scheme of the existing intents or dialogs bundles, from the keys
+   * recorded in the sync state or else from the keys of one bundle on GP
+   * 
+   * @param language
+   * @return scheme, null if there are no such bundles
+   * @throws ServiceException
+   */
+  private Integer existingKeyScheme(String language) throws ServiceException {
+    String prefix = getBundleId() != null ? getBundleId() : getSourceworkspaceId();
+    BundleCatalog catalog = getBundleCatalog();
+    for (String section : new String[] { prefix + "-intents", prefix + "-dialogs" }) {
+      Set<String> bundles = catalog.getBundles(section);
+      if (bundles.isEmpty()) {
+        continue;
+      }
+      Map<String, ? extends Map<String, String>> recorded = syncState != null ? syncState.getSection(section) : null;
+      if (recorded != null) {
+        for (Map<String, String> bundle : recorded.values()) {
+          if (!bundle.isEmpty()) {
+            return ResourceKeys.detect(bundle.keySet());
+          }
+        }
+      }
+      for (String bundleId : bundles) {
+        Map<String, String> strings = getGPClient().getResourceStrings(bundleId, language, false);
+        if (!strings.isEmpty()) {
+          return ResourceKeys.detect(strings.keySet());
+        }
+      }
     }
+    return null;
+  }
 
+  private Map<String, TreeSet<String>> toResourceMap(TranslatableContent content, Section section,
+      ForkJoinPool pool) {
+    if (pool == null) {
+      return content.toResourceMap(section, resourceKeys);
+    }
+    return content.toResourceMap(section, resourceKeys.getScheme(), pool);
   }
 
   /***
@@ -79,15 +450,14 @@ public class WCS_To_GP extends BaseUtility {
    * @param uniqueBotOutputIntents
    * @param uniqueBotOutputEntities
    * @param uniqueBotOutputDialogs
-   * @param MAP_SPLIT_SIZE
-   * @param jsonWCSPayload
+   * @param gp_sourceLanguage
    * @return
    * @throws ServiceException
    * @throws Exception
    */
   private void createBundles(Map<String, TreeSet<String>> uniqueBotOutputIntents,
       Map<String, TreeSet<String>> uniqueBotOutputEntities, Map<String, TreeSet<String>> uniqueBotOutputDialogs,
-      int splitSize, JsonObject jsonWCSPayload) throws ServiceException, Exception {
+      String gp_sourceLanguage) throws ServiceException, Exception {
 
     // Get Command Line Params
     String workspaceId = getSourceworkspaceId();
@@ -117,17 +487,10 @@ public class WCS_To_GP extends BaseUtility {
       dialogsBundle = workspaceId + dialogs;
     }
 
-    // Get source Language from WCS JSON Payload
-    String gp_sourceLanguage = null;
+    sourceLanguage = gp_sourceLanguage;
     NewBundleData newBundleData = null;
-    JsonElement gp_srcLanguage = jsonWCSPayload.get("language");
-    if (!gp_srcLanguage.isJsonNull()) {
-      gp_sourceLanguage = gp_srcLanguage.getAsString();
-      if (gp_sourceLanguage != null && !gp_sourceLanguage.isEmpty()) {
-        newBundleData = new NewBundleData(gp_sourceLanguage);
-      }
-    } else {
-      throw new WCSWorkspaceException("No Language Specified in WCS");
+    if (gp_sourceLanguage != null && !gp_sourceLanguage.isEmpty()) {
+      newBundleData = new NewBundleData(gp_sourceLanguage);
     }
 
     Set<String> targetLangs = null;
@@ -140,63 +503,58 @@ public class WCS_To_GP extends BaseUtility {
       newBundleData.setTargetLanguages(targetLangs);
     }
 
-    Set<String> gpbundleIds = null;
-    gpbundleIds = getGPClient().getBundleIds();
+    BundleCatalog catalog = getBundleCatalog();
     boolean intentBundleExists = false;
     boolean entityBundleExists = false;
     boolean dialogBundleExists = false;
 
-    if (gpbundleIds.size() == 0) {
+    if (catalog.isEmpty()) {
       // Bundle does not exist
       intentBundleExists = false;
       entityBundleExists = false;
       dialogBundleExists = false;
       System.out.println("Bundles does not exist on GP. Creating them..");
     } else {
-      Set<String> intentsGPBundle = new HashSet<String>();
-      Set<String> entitiesGPBundle = new HashSet<String>();
-      Set<String> dialogsGPBundle = new HashSet<String>();
-      // Some bundle already exist on GP. Parse the existing bundle Id's
-      for (String str : gpbundleIds) {
-        if (str.equals(intentsBundle) || str.contains(intentsBundle)) {
-          intentBundleExists = true;
-          intentsGPBundle.add(str);
-        }
-        if (str.equals(entitiesBundle) || str.contains(entitiesBundle)) {
-          entityBundleExists = true;
-          entitiesGPBundle.add(str);
-        }
-        if (str.equals(dialogsBundle) || str.contains(dialogsBundle)) {
-          dialogBundleExists = true;
-          dialogsGPBundle.add(str);
-        }
-      }
+      // Some bundle already exist on GP. Look up the existing bundle Id's
+      Set<String> intentsGPBundle = catalog.getBundles(intentsBundle);
+      Set<String> entitiesGPBundle = catalog.getBundles(entitiesBundle);
+      Set<String> dialogsGPBundle = catalog.getBundles(dialogsBundle);
+      intentBundleExists = !intentsGPBundle.isEmpty();
+      entityBundleExists = !entitiesGPBundle.isEmpty();
+      dialogBundleExists = !dialogsGPBundle.isEmpty();
 
       if (intentsGPBundle.size() > 0) {
         System.out.println("Intent Bundle already exists on GP");
         updateTargetLanguages(intentsGPBundle, targetLangs);
-        updatedGPBundle(intentsGPBundle, gp_sourceLanguage, uniqueBotOutputIntents, splitSize, newBundleData);
+        updatedGPBundle(intentsBundle, intentsGPBundle, gp_sourceLanguage, uniqueBotOutputIntents,
+            newBundleData);
       }
 
       if (entitiesGPBundle.size() > 0) {
         System.out.println("Entity Bundle already exists on GP");
         updateTargetLanguages(entitiesGPBundle, targetLangs);
-        updatedGPBundle(entitiesGPBundle, gp_sourceLanguage, uniqueBotOutputEntities, splitSize, newBundleData);
+        updatedGPBundle(entitiesBundle, entitiesGPBundle, gp_sourceLanguage, uniqueBotOutputEntities,
+            newBundleData);
       }
 
       if (dialogsGPBundle.size() > 0) {
         System.out.println("Dialog Bundle already exists on GP");
         updateTargetLanguages(dialogsGPBundle, targetLangs);
-        updatedGPBundle(dialogsGPBundle, gp_sourceLanguage, uniqueBotOutputDialogs, splitSize, newBundleData);
+        updatedGPBundle(dialogsBundle, dialogsGPBundle, gp_sourceLanguage, uniqueBotOutputDialogs,
+            newBundleData);
       }
     }
     // BundleId's does not exist on GP
     if (intentBundleExists == false) {
+      if (syncState != null) {
+        // Stale records of a section that no longer exists on GP
+        syncState.resetSection(intentsBundle);
+      }
       if (uniqueBotOutputIntents.size() > 0) {
         System.out.println("Intent Bundle does not exist on GP. Creating..");
-        if (uniqueBotOutputIntents.size() > splitSize) {
-          // Break into smaller bundles of size 300
-          generateSmallBundles(uniqueBotOutputIntents, splitSize, intentsBundle, newBundleData);
+        if (splitter.exceeds(uniqueBotOutputIntents)) {
+          // Break into smaller bundles
+          generateSmallBundles(uniqueBotOutputIntents, intentsBundle, newBundleData);
           System.out.println("Uploaded Resource Strings to Intents \n");
         } else {
           // Create Bundle on GP
@@ -211,12 +569,16 @@ public class WCS_To_GP extends BaseUtility {
       }
     }
     if (entityBundleExists == false) {
+      if (syncState != null) {
+        // Stale records of a section that no longer exists on GP
+        syncState.resetSection(entitiesBundle);
+      }
       // Create Bundle on GP
       if (uniqueBotOutputEntities.size() > 0) {
         System.out.println("Entity Bundle does not exist on GP. Creating..");
-        if (uniqueBotOutputEntities.size() > splitSize) {
-          // Break into smaller bundles of size 300
-          generateSmallBundles(uniqueBotOutputEntities, splitSize, entitiesBundle, newBundleData);
+        if (splitter.exceeds(uniqueBotOutputEntities)) {
+          // Break into smaller bundles
+          generateSmallBundles(uniqueBotOutputEntities, entitiesBundle, newBundleData);
           System.out.println("Uploaded Resource Strings to Entities \n");
         } else {
           entitiesBundle = entitiesBundle + "-1";
@@ -230,15 +592,19 @@ public class WCS_To_GP extends BaseUtility {
       }
     }
     if (dialogBundleExists == false) {
+      if (syncState != null) {
+        // Stale records of a section that no longer exists on GP
+        syncState.resetSection(dialogsBundle);
+      }
       // Create Bundle on GP
       if (uniqueBotOutputDialogs.size() > 0) {
         System.out.println("Dialog Bundle does not exist on GP. Creating..");
-        if (uniqueBotOutputDialogs.size() > splitSize) {
-          // Break into smaller bundles of size 300
-          generateSmallBundles(uniqueBotOutputDialogs, splitSize, dialogsBundle, newBundleData);
+        if (splitter.exceeds(uniqueBotOutputDialogs)) {
+          // Break into smaller bundles
+          generateSmallBundles(uniqueBotOutputDialogs, dialogsBundle, newBundleData);
           System.out.println("Uploaded Resource Strings to Dialogs \n");
         } else {
-          // Size is less than 300 -> just upload it to GP
+          // Fits in a single bundle -> just upload it to GP
           dialogsBundle = dialogsBundle + "-1";
           getGPClient().createBundle(dialogsBundle, newBundleData);
           System.out.println("Created " + dialogsBundle);
@@ -252,59 +618,109 @@ public class WCS_To_GP extends BaseUtility {
   }
 
   /***
-   * If intents, entities and dialogs size exceeds size 300 then create smaller
-   * bundles on GP
+   * If intents, entities and dialogs do not fit in a single bundle then create
+   * smaller bundles on GP
    * 
    * @param uniqueBotOutput
-   * @param splitSize
    * @param bundleName
    * @param newBundleData
-   * @param uniqueBotOutputEntities
-   * @return
    * @throws ServiceException
    */
-  private void generateSmallBundles(Map<String, TreeSet<String>> uniqueBotOutput, int splitSize, String bundleName,
+  private void generateSmallBundles(Map<String, TreeSet<String>> uniqueBotOutput, String bundleName,
       NewBundleData newBundleData) throws ServiceException {
-    int counter = 1;
     int batch = 1;
-    TreeMap<String, TreeSet<String>> newIntentMap = new TreeMap<String, TreeSet<String>>();
-    String newBundlename = null;
-    for (Entry<String, TreeSet<String>> entry : uniqueBotOutput.entrySet()) {
-
-      TreeSet<String> newIntentSet = entry.getValue();
-      String key = entry.getKey();
-      newIntentMap.put(key, newIntentSet);
+    Map<String, BundleUpload> uploads = new LinkedHashMap<String, BundleUpload>();
+    for (Map<String, TreeSet<String>> newIntentMap : splitter.split(uniqueBotOutput)) {
+      uploads.put(bundleName + "-" + batch, treeUpload(newIntentMap));
+      batch++;
+    }
+    createAndUploadBundles(uploads, newBundleData);
+  }
 
-      if (counter == splitSize) {
-        newBundlename = bundleName + "-" + batch;
-        // Create Bundle on GP
-        getGPClient().createBundle(newBundlename, newBundleData);
-        System.out.println("Created " + newBundlename);
+  /***
+   * Upload of resource strings to a newly created bundle
+   */
+  private interface BundleUpload {
+    void upload(String bundleName) throws ServiceException;
+  }
 
-        // Upload Resource Strings to Intents
-        if (newBundlename.contains("-dialogs") || newBundlename.contains("-intents")) {
-          uploadToGP(newBundlename, newIntentMap);
+  private BundleUpload treeUpload(final Map<String, TreeSet<String>> bundleContent) {
+    return new BundleUpload() {
+      @Override
+      public void upload(String bundleName) throws ServiceException {
+        // Upload Resource Strings
+        if (bundleName.contains("-dialogs") || bundleName.contains("-intents")) {
+          uploadToGP(bundleName, bundleContent);
         } else {
-          uploadEntities(newBundlename, newIntentMap);
+          uploadEntities(bundleName, bundleContent);
         }
-        batch++;
-        newBundlename = null;
-        newIntentMap.clear();
-        counter = 0;
-      }
-      counter++;
-    }
-    // Handle last bucket
-    if (newIntentMap.size() > 0) {
-      newBundlename = bundleName + "-" + batch;
-      getGPClient().createBundle(newBundlename, newBundleData);
-      System.out.println("Created " + newBundlename);
-      // Upload Resource Strings
-      if (newBundlename.contains("-dialogs") || newBundlename.contains("-intents")) {
-        uploadToGP(newBundlename, newIntentMap);
-      } else {
-        uploadEntities(newBundlename, newIntentMap);
       }
+    };
+  }
+
+  private BundleUpload stringsUpload(final Map<String, String> bundleContent) {
+    return new BundleUpload() {
+      @Override
+      public void upload(String bundleName) throws ServiceException {
+        updateResourceStrings(bundleName, bundleContent);
+      }
+    };
+  }
+
+  /***
+   * Create bundles on GP and upload their resource strings. Up to
+   * uploadThreads bundles are processed at the same time. Bundle names are
+   * assigned by the caller, so numbering does not depend on completion order
+   * 
+   * @param uploads
+   *          bundle name to upload, in bundle order
+   * @param newBundleData
+   * @throws ServiceException
+   */
+  private void createAndUploadBundles(Map<String, BundleUpload> uploads, final NewBundleData newBundleData)
+      throws ServiceException {
+    if (uploads.isEmpty()) {
+      return;
+    }
+    int threads = Math.max(1, Math.min(uploadThreads, uploads.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Map<String, Future<Long>> results = new LinkedHashMap<String, Future<Long>>();
+    try {
+      for (Entry<String, BundleUpload> entry : uploads.entrySet()) {
+        final String newBundlename = entry.getKey();
+        final BundleUpload upload = entry.getValue();
+        results.put(newBundlename, executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws ServiceException {
+            long start = System.nanoTime();
+            // Create Bundle on GP
+            getGPClient().createBundle(newBundlename, newBundleData);
+            upload.upload(newBundlename);
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          }
+        }));
+      }
+      ServiceException failure = null;
+      for (Entry<String, Future<Long>> result : results.entrySet()) {
+        try {
+          long millis = result.getValue().get();
+          System.out.println("Created " + result.getKey() + " (" + millis + " ms)");
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          System.out.println("Failed to create or upload " + result.getKey() + ": " + cause);
+          if (failure == null) {
+            failure = cause instanceof ServiceException ? (ServiceException) cause : new ServiceException(cause);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException("Interrupted while uploading bundles", e);
+    } finally {
+      executor.shutdownNow();
     }
   }
 
@@ -352,7 +768,6 @@ public class WCS_To_GP extends BaseUtility {
    * @param exists
    * @param bundleNames
    * @param src
-   * @param splitSize
    * @param newBundleData
    * @param uniqueBotOutputIntents
    * @param uniqueBotOutputEntities
@@ -361,8 +776,19 @@ public class WCS_To_GP extends BaseUtility {
    * @throws ServiceException
    * @throws WCSWorkspaceException
    */
-  private void updatedGPBundle(Set<String> bundleNames, String src, Map<String, TreeSet<String>> outputMap,
-      int splitSize, NewBundleData newBundleData) throws ServiceException, WCSWorkspaceException {
+  private void updatedGPBundle(String section, Set<String> bundleNames, String src,
+      Map<String, TreeSet<String>> outputMap, NewBundleData newBundleData)
+      throws ServiceException, WCSWorkspaceException {
+
+    if (syncState != null) {
+      Map<String, ? extends Map<String, String>> recorded = syncState.getSection(section);
+      if (recorded != null && recorded.keySet().equals(bundleNames)) {
+        updatedGPBundleFromState(recorded, bundleNames, src, outputMap, newBundleData);
+        return;
+      }
+      // No usable record of this section, rebuild it from GP
+      syncState.resetSection(section);
+    }
 
     // Get Bundle Contents from GP
     TreeMap<String, Map<String, String>> intentMap = new TreeMap<String, Map<String, String>>();
@@ -373,6 +799,9 @@ public class WCS_To_GP extends BaseUtility {
     while (setItr.hasNext()) {
       name = setItr.next();
       tempMap = getGPClient().getResourceStrings(name, src, false);
+      if (syncState != null) {
+        syncState.putBundle(name, tempMap);
+      }
       gpMap.putAll(tempMap);
       intentMap.put(name, tempMap);
     }
@@ -382,7 +811,15 @@ public class WCS_To_GP extends BaseUtility {
     if (newMap != null && newMap.size() > 0) {
       // Update Resource Strings on GP
       System.out.println("      ** " + newMap.size() + " Resource Strings has been modified. Updating on GP \n");
-      updateBundlesGP(newMap, intentMap, gpMap, splitSize, bundleNames, newBundleData);
+      Map<String, Map<String, Long>> bundleContent = new TreeMap<String, Map<String, Long>>();
+      for (Entry<String, Map<String, String>> bundle : intentMap.entrySet()) {
+        Map<String, Long> textBytes = new HashMap<String, Long>();
+        for (Entry<String, String> entry : bundle.getValue().entrySet()) {
+          textBytes.put(entry.getKey(), BundleSplitter.textBytes(entry.getValue()));
+        }
+        bundleContent.put(bundle.getKey(), textBytes);
+      }
+      updateBundlesGP(newMap, bundleContent, newBundleData);
     } else {
       System.out.println("      Resource Strings has not changed. Not Updating GP \n");
     }
@@ -390,144 +827,189 @@ public class WCS_To_GP extends BaseUtility {
   }
 
   /***
-   * Update existing Bundles on GP with modified Resource strings
+   * Compare WCS translatable content with the sync state recorded by the
+   * previous run. Nothing is read from GP, only the changes are written
    * 
-   * @param newMap
-   * @param intentMap
-   * @param gpMap
-   * @param gpMap
-   * @param splitSize
-   * @param bundleNames
-   * @param splitSize
+   * @param recorded
    * @param bundleNames
+   * @param src
+   * @param outputMap
    * @param newBundleData
-   * @return gpMapUpdated
    * @throws ServiceException
    * @throws WCSWorkspaceException
    */
-  private void updateBundlesGP(Map<String, String> newMap, TreeMap<String, Map<String, String>> intentMap,
-      Map<String, String> gpMap, int splitSize, Set<String> bundleNames, NewBundleData newBundleData)
+  private void updatedGPBundleFromState(Map<String, ? extends Map<String, String>> recorded, Set<String> bundleNames,
+      String src, Map<String, TreeSet<String>> outputMap, NewBundleData newBundleData)
       throws ServiceException, WCSWorkspaceException {
-    // Add new modifications from WCS
-    boolean addEntries = false;
-    boolean deleteEntries = false;
+    String name = bundleNames.iterator().next();
+    Map<String, String> wcsMap = null;
+    if (name.contains("-intents") || name.contains("-dialogs")) {
+      wcsMap = fetchIntents(outputMap);
+    } else {
+      wcsMap = fetchEntities(outputMap);
+    }
+
+    Map<String, String> newMap = new HashMap<String, String>();
+    Set<String> recordedKeys = new HashSet<String>();
+    for (Entry<String, ? extends Map<String, String>> bundle : recorded.entrySet()) {
+      for (Entry<String, String> entry : bundle.getValue().entrySet()) {
+        String key = entry.getKey();
+        recordedKeys.add(key);
+        String value = wcsMap.get(key);
+        if (value == null) {
+          // No longer used in WCS -> delete it from its bundle
+          newMap.put(key, "null-remove");
+        } else if (!entry.getValue().equals(SyncState.fingerprint(value))) {
+          // Same key but value is modified now
+          newMap.put(key, value);
+        }
+      }
+    }
+    for (Entry<String, String> entry : wcsMap.entrySet()) {
+      if (!recordedKeys.contains(entry.getKey())) {
+        newMap.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    if (newMap.isEmpty()) {
+      System.out.println("      Resource Strings has not changed since last sync. Not Updating GP \n");
+      return;
+    }
+
+    Map<String, Map<String, Long>> bundleContent = new TreeMap<String, Map<String, Long>>();
+    for (Entry<String, ? extends Map<String, String>> bundle : recorded.entrySet()) {
+      Map<String, Long> textBytes = new HashMap<String, Long>();
+      for (Entry<String, String> entry : bundle.getValue().entrySet()) {
+        textBytes.put(entry.getKey(), SyncState.textBytes(entry.getValue()));
+      }
+      bundleContent.put(bundle.getKey(), textBytes);
+    }
+    System.out.println(
+        "      ** " + newMap.size() + " Resource Strings has been modified since last sync. Updating on GP \n");
+    updateBundlesGP(newMap, bundleContent, newBundleData);
+  }
+
+  /***
+   * Update existing Bundles on GP with modified Resource strings. Only the
+   * changed resource strings are sent: modified strings are updated in the
+   * bundle holding them, removed strings are deleted from their bundle and new
+   * strings are added to bundles with room left. Bundles left empty are
+   * deleted and strings that do not fit go to new bundles
+   * 
+   * @param newMap
+   *          modified resource strings, "null-remove" for removed ones
+   * @param bundleContent
+   *          estimated size of each resource string currently held by each
+   *          bundle of the section
+   * @param newBundleData
+   * @throws ServiceException
+   * @throws WCSWorkspaceException
+   */
+  private void updateBundlesGP(Map<String, String> newMap, Map<String, ? extends Map<String, Long>> bundleContent,
+      NewBundleData newBundleData) throws ServiceException, WCSWorkspaceException {
+    Map<String, String> owners = new HashMap<String, String>();
+    Map<String, Integer> sizes = new TreeMap<String, Integer>();
+    Map<String, Long> bytes = new HashMap<String, Long>();
+    for (Entry<String, ? extends Map<String, Long>> bundle : bundleContent.entrySet()) {
+      long bundleBytes = 0;
+      for (Entry<String, Long> entry : bundle.getValue().entrySet()) {
+        owners.put(entry.getKey(), bundle.getKey());
+        bundleBytes += BundleSplitter.entryBytes(entry.getKey(), entry.getValue());
+      }
+      sizes.put(bundle.getKey(), bundle.getValue().size());
+      bytes.put(bundle.getKey(), bundleBytes);
+    }
+
+    // Changes per bundle, null value deletes the resource string
+    TreeMap<String, Map<String, String>> deltas = new TreeMap<String, Map<String, String>>();
+    Map<String, String> additions = new TreeMap<String, String>();
     for (Entry<String, String> entrySet : newMap.entrySet()) {
       String newMapKey = entrySet.getKey();
       String newMapVal = entrySet.getValue();
-      if (!newMapVal.equals("null-remove")) {
-        // Add Resource strings to GP
-        addEntries = true;
-      } else {
-        deleteEntries = true;
-        // Delete Resource Strings from GP
-        Map<String, String> innerMap = new ConcurrentHashMap<>();
-        for (Map.Entry<String, Map<String, String>> entryMap : intentMap.entrySet()) {
-          innerMap = entryMap.getValue();
-          if (innerMap.containsKey(newMapKey)) {
-            innerMap.remove(newMapKey);
-            break;
-          }
+      String owner = owners.get(newMapKey);
+      if (newMapVal.equals("null-remove")) {
+        if (owner != null) {
+          delta(deltas, owner).put(newMapKey, null);
+          sizes.put(owner, sizes.get(owner) - 1);
+          bytes.put(owner, bytes.get(owner)
+              - BundleSplitter.entryBytes(newMapKey, bundleContent.get(owner).get(newMapKey)));
         }
+      } else if (owner != null) {
+        delta(deltas, owner).put(newMapKey, newMapVal);
+        bytes.put(owner, bytes.get(owner) + BundleSplitter.textBytes(newMapVal)
+            - bundleContent.get(owner).get(newMapKey));
+      } else {
+        additions.put(newMapKey, newMapVal);
       }
     }
-    if (deleteEntries == true) {
-      for (Map.Entry<String, Map<String, String>> entryMap : intentMap.entrySet()) {
-        String key = entryMap.getKey();
-        Map<String, String> updateGPMap = entryMap.getValue();
-        if (updateGPMap.size() == 0) {
-          // Delete Bundles From GP
-          System.out.println("      ** No Resoucre Strings left in bundle " + key + " ...Deleting it");
-          getGPClient().deleteBundle(key);
-          // break;
-        } else {
-          // Update Resource Strings on GP
-          updateResourceStrings(key, updateGPMap);
+
+    // Fill existing bundles which have room left
+    for (Entry<String, Integer> size : sizes.entrySet()) {
+      String owner = size.getKey();
+      Iterator<Entry<String, String>> addItr = additions.entrySet().iterator();
+      while (addItr.hasNext()) {
+        Entry<String, String> addition = addItr.next();
+        long entryBytes = BundleSplitter.entryBytes(addition.getKey(), BundleSplitter.textBytes(addition.getValue()));
+        if (!splitter.fits(size.getValue() + 1, bytes.get(owner) + entryBytes)) {
+          break;
         }
+        delta(deltas, owner).put(addition.getKey(), addition.getValue());
+        size.setValue(size.getValue() + 1);
+        bytes.put(owner, bytes.get(owner) + entryBytes);
+        addItr.remove();
       }
     }
-    if (addEntries == true) {
-      String newstr = null;
-      String maxBundleId = null;
-      int maxIndex = 1;
-      Map<String, String> newBundleGP = new HashMap<String, String>();
-      boolean existingEmptyBundle = false;
-      for (Map.Entry<String, Map<String, String>> entryMap : intentMap.entrySet()) {
-        newstr = entryMap.getKey();
-        newBundleGP = entryMap.getValue();
-
-        if (newBundleGP.size() < 300) {
-          if (newBundleGP.size() + newMap.size() <= 300) {
-            existingEmptyBundle = true;
-            break;
-          }
+
+    for (Entry<String, Map<String, String>> delta : deltas.entrySet()) {
+      String key = delta.getKey();
+      if (sizes.get(key) == 0) {
+        // Delete Bundles From GP
+        System.out.println("      ** No Resoucre Strings left in bundle " + key + " ...Deleting it");
+        getGPClient().deleteBundle(key);
+        if (syncState != null) {
+          syncState.removeBundle(key);
         }
+      } else {
+        System.out.println("      ** Updating " + delta.getValue().size() + " resource strings in Bundle " + key);
+        updateResourceDelta(key, delta.getValue());
       }
+    }
 
-      if (existingEmptyBundle == true) {
-        newBundleGP.putAll(newMap);
-        updateResourceStrings(newstr, newBundleGP);
-      } else {
-        for (Map.Entry<String, Map<String, String>> entryMap : intentMap.entrySet()) {
-          newstr = entryMap.getKey();
-          String bundleId = newstr.substring(newstr.lastIndexOf('-') + 1, newstr.length());
-          int index = Integer.parseInt(bundleId);
-          if (index >= maxIndex) {
-            maxIndex = index;
-            maxBundleId = newstr;
-          }
-        }
-        if (newMap.size() <= 300) {
-          maxIndex++;
-          String newBundleIndex = Integer.toString(maxIndex);
-          String bundleName = maxBundleId.substring(0, (maxBundleId.lastIndexOf('-')));
-          String newGPBundle = bundleName + "-" + newBundleIndex;
-          System.out.println("      ** Uploading " + newMap.size() + " resource strings to Bundle " + newGPBundle);
-
-          getGPClient().createBundle(newGPBundle, newBundleData);
-          updateResourceStrings(newGPBundle, newMap);
-        } else {
-          int counter = 1;
-          Map<String, String> uploadGPMap = new TreeMap<String, String>();
-
-          for (Map.Entry<String, String> newMapEntrySet : newMap.entrySet()) {
-            String newMapValue = newMapEntrySet.getValue();
-            String newMapKey = newMapEntrySet.getKey();
-            uploadGPMap.put(newMapKey, newMapValue);
-
-            if (counter == splitSize) {
-              maxIndex++;
-              String newBundleIndex = Integer.toString(maxIndex);
-              String bundleName = maxBundleId.substring(0, (maxBundleId.lastIndexOf('-')));
-              String newGPBundle = bundleName + "-" + newBundleIndex;
-              System.out
-                  .println("      ** Uploading " + uploadGPMap.size() + " resource strings to Bundle " + newGPBundle);
-
-              getGPClient().createBundle(newGPBundle, newBundleData);
-              updateResourceStrings(newGPBundle, uploadGPMap);
-              uploadGPMap.clear();
-              maxBundleId = newGPBundle;
-              counter = 0;
-            }
-            counter++;
-          }
-          // Handle last bucket
-          if (uploadGPMap.size() > 0) {
-            maxIndex++;
-            String newBundleIndex = Integer.toString(maxIndex);
-            String bundleName = maxBundleId.substring(0, (maxBundleId.lastIndexOf('-')));
-            String newGPBundle = bundleName + "-" + newBundleIndex;
-            System.out
-                .println("      ** Uploading " + uploadGPMap.size() + " resource strings to Bundle " + newGPBundle);
-
-            getGPClient().createBundle(newGPBundle, newBundleData);
-            updateResourceStrings(newGPBundle, uploadGPMap);
-          }
+    if (!additions.isEmpty()) {
+      // Remaining resource strings go to new bundles
+      String maxBundleId = null;
+      int maxIndex = 0;
+      for (String bundleNameGP : bundleContent.keySet()) {
+        String section = BundleCatalog.sectionOf(bundleNameGP);
+        int index = section.length() < bundleNameGP.length()
+            ? Integer.parseInt(bundleNameGP.substring(section.length() + 1)) : 0;
+        if (maxBundleId == null || index >= maxIndex) {
+          maxIndex = index;
+          maxBundleId = bundleNameGP;
         }
       }
+      String bundleName = BundleCatalog.sectionOf(maxBundleId);
+      Map<String, BundleUpload> uploads = new LinkedHashMap<String, BundleUpload>();
+      for (Map<String, String> uploadGPMap : splitter.split(additions)) {
+        maxIndex++;
+        String newGPBundle = bundleName + "-" + maxIndex;
+        System.out.println("      ** Uploading " + uploadGPMap.size() + " resource strings to Bundle " + newGPBundle);
+        uploads.put(newGPBundle, stringsUpload(uploadGPMap));
+      }
+      createAndUploadBundles(uploads, newBundleData);
     }
     System.out.println("\n");
   }
 
+  private static Map<String, String> delta(Map<String, Map<String, String>> deltas, String bundleId) {
+    Map<String, String> delta = deltas.get(bundleId);
+    if (delta == null) {
+      delta = new TreeMap<String, String>();
+      deltas.put(bundleId, delta);
+    }
+    return delta;
+  }
+
   /***
    * Compare existing resource strings from WCS to GP
    * 
@@ -538,7 +1020,7 @@ public class WCS_To_GP extends BaseUtility {
    * @param uniqueBotOutputDialogs
    * @return gpMapUpdated
    */
-  private Map<String, String> getUpdatedStrings(Map<String, String> gpMap, String bundleID,
+  static Map<String, String> getUpdatedStrings(Map<String, String> gpMap, String bundleID,
       Map<String, TreeSet<String>> botOutput) {
 
     Map<String, String> wcsMap = null;
@@ -592,14 +1074,27 @@ public class WCS_To_GP extends BaseUtility {
    * @param bundleID
    * @param updatedMap
    * @return
+   * @throws ServiceException
    */
-  private void updateResourceStrings(String bundleID, Map<String, String> updatedMap) {
-    try {
-      String src = getGPClient().getBundleInfo(bundleID).getSourceLanguage();
-      getGPClient().uploadResourceStrings(bundleID, src, updatedMap);
+  private void updateResourceStrings(String bundleID, Map<String, String> updatedMap) throws ServiceException {
+    getGPClient().uploadResourceStrings(bundleID, sourceLanguage, updatedMap);
+    if (syncState != null) {
+      syncState.putBundle(bundleID, updatedMap);
+    }
+  }
 
-    } catch (ServiceException e) {
-      e.printStackTrace();
+  /***
+   * Send only changed resource strings to a bundle. A null value deletes the
+   * resource string
+   * 
+   * @param bundleID
+   * @param delta
+   * @throws ServiceException
+   */
+  private void updateResourceDelta(String bundleID, Map<String, String> delta) throws ServiceException {
+    getGPClient().updateResourceStrings(bundleID, sourceLanguage, delta, false);
+    if (syncState != null) {
+      syncState.updateBundle(bundleID, delta);
     }
   }
 
@@ -612,7 +1107,7 @@ public class WCS_To_GP extends BaseUtility {
    * @param uniqueBotOutputDialogs
    * @return updatedMap
    */
-  private Map<String, String> fetchIntents(Map<String, TreeSet<String>> botMap) {
+  static Map<String, String> fetchIntents(Map<String, TreeSet<String>> botMap) {
     Map<String, String> updatedMap = new HashMap<String, String>();
     for (Entry<String, TreeSet<String>> res : botMap.entrySet()) {
       String numberAsString = res.getKey();
@@ -638,7 +1133,7 @@ public class WCS_To_GP extends BaseUtility {
    * @param botEntities
    * @return updatedMap
    */
-  private Map<String, String> fetchEntities(Map<String, TreeSet<String>> botEntities) {
+  static Map<String, String> fetchEntities(Map<String, TreeSet<String>> botEntities) {
     Map<String, String> updatedMap = new HashMap<String, String>();
     for (Entry<String, TreeSet<String>> res : botEntities.entrySet()) {
       String key = res.getKey();
@@ -665,8 +1160,10 @@ public class WCS_To_GP extends BaseUtility {
    * @param uniqueBotOutputTree
    * @param uniqueBotOutputEntity
    * @return
+   * @throws ServiceException
    */
-  private void uploadToGP(String resourceString, Map<String, TreeSet<String>> uniqueBotOutputTree) {
+  private void uploadToGP(String resourceString, Map<String, TreeSet<String>> uniqueBotOutputTree)
+      throws ServiceException {
     if (resourceString.contains("-intents") || resourceString.contains("-dialogs")) {
       Map<String, String> intentEntries = new HashMap<String, String>(uniqueBotOutputTree.size());
       for (Entry<String, TreeSet<String>> res : uniqueBotOutputTree.entrySet()) {
@@ -684,11 +1181,9 @@ public class WCS_To_GP extends BaseUtility {
           }
         }
       }
-      try {
-        String src = getGPClient().getBundleInfo(resourceString).getSourceLanguage();
-        getGPClient().uploadResourceStrings(resourceString, src, intentEntries);
-      } catch (ServiceException e) {
-        e.printStackTrace();
+      getGPClient().uploadResourceStrings(resourceString, sourceLanguage, intentEntries);
+      if (syncState != null) {
+        syncState.putBundle(resourceString, intentEntries);
       }
     }
   }
@@ -699,8 +1194,10 @@ public class WCS_To_GP extends BaseUtility {
    * @param resourceString
    * @param uniqueBotOutputTree
    * @return
+   * @throws ServiceException
    */
-  private void uploadEntities(String resourceString, Map<String, TreeSet<String>> uniqueBotOutputTree) {
+  private void uploadEntities(String resourceString, Map<String, TreeSet<String>> uniqueBotOutputTree)
+      throws ServiceException {
     // Upload Resource Strings
     Map<String, NewResourceEntryData> intentEntries = new HashMap<String, NewResourceEntryData>(
         uniqueBotOutputTree.size());
@@ -722,11 +1219,13 @@ public class WCS_To_GP extends BaseUtility {
         }
       }
     }
-    try {
-      String src = getGPClient().getBundleInfo(resourceString).getSourceLanguage();
-      getGPClient().uploadResourceEntries(resourceString, src, intentEntries);
-    } catch (ServiceException e) {
-      e.printStackTrace();
+    getGPClient().uploadResourceEntries(resourceString, sourceLanguage, intentEntries);
+    if (syncState != null) {
+      Map<String, String> uploaded = new HashMap<String, String>(intentEntries.size());
+      for (Entry<String, NewResourceEntryData> entry : intentEntries.entrySet()) {
+        uploaded.put(entry.getKey(), entry.getValue().getValue());
+      }
+      syncState.putBundle(resourceString, uploaded);
     }
   }
 
@@ -738,7 +1237,11 @@ public class WCS_To_GP extends BaseUtility {
    * @param versionDate
    * @return jsonResponse
    */
-  private JsonObject getConvWorkspace() {
+  private JsonObject getConvWorkspace() throws WCSWorkspaceException {
+    if (getInputFile() != null) {
+      return WCSUtils.readWorkspaceFile(getInputFile());
+    }
+
     // Get Watson Conv Creds
     String wcsCreds = getWCSCreds();
 
@@ -752,242 +1255,29 @@ public class WCS_To_GP extends BaseUtility {
   }
 
   /***
-   * Parse Intents from Watson Conversation workspace and store translatable
-   * content
+   * Stream Watson conversation workspace and extract translatable content
+   * without loading the workspace in memory
    * 
-   * @param jsonWCSPayload
-   * @return uniqueBotOutputIntent
+   * @return extractor
+   * @throws WCSWorkspaceException
    */
-  private Map<String, TreeSet<String>> parseWCSIntents(JsonObject jsonWCSPayload) {
-    // Fetch Intents from Watson Conversation File
+  private WorkspaceStreamExtractor streamConvWorkspace() throws WCSWorkspaceException {
     System.out.println("\n");
-    System.out.println("   ***** Fetching Intents *****");
-    JsonArray intents = jsonWCSPayload.getAsJsonArray("intents");
-
-    TreeMap<String, TreeSet<String>> uniqueBotOutputIntent = new TreeMap<String, TreeSet<String>>();
-    if (intents.size() > 0) {
-      for (JsonElement intentsArray : intents) {
-        JsonObject intentObj = intentsArray.getAsJsonObject();
-        JsonArray intentEx = (JsonArray) intentObj.get("examples");
-
-        if (intentEx.size() > 0) {
-          for (JsonElement intentsText : intentEx) {
-            JsonObject intentTextObj = intentsText.getAsJsonObject();
-            String textIntent = intentTextObj.get("text").getAsString();
-            if (textIntent != null && textIntent.length() > 0) {
-              int textIntentHash = textIntent.hashCode();
-              String result = Integer.toHexString(textIntentHash);
-              String append = null;
-              if (textIntent.length() < 5) {
-                append = textIntent.substring(0, textIntent.length());
-              } else {
-                append = textIntent.substring(0, 4);
-              }
-              result = append + "_" + result;
-              if (!uniqueBotOutputIntent.containsKey(result)) {
-                TreeSet<String> intentSet = new TreeSet<String>();
-                intentSet.add(textIntent);
-                uniqueBotOutputIntent.put(result, intentSet);
-              } else {
-                // Collision Occurred
-                uniqueBotOutputIntent.get(result).add(textIntent);
-              }
-            }
-          }
-        }
-        // else if size < 0 -> no intent examples defined. Ignore...
-      }
+    System.out.println("   ***** Streaming Intents, Entities and Dialog Nodes *****");
+    WorkspaceStreamExtractor extractor = new WorkspaceStreamExtractor();
+    if (getInputFile() != null) {
+      WCSUtils.streamWorkspaceFile(getInputFile(), extractor);
+      return extractor;
     }
-    // else if size < 0 -> No Intents Defined in the WCS workspace.
-    // Ignore...
-    System.out.println("   Fetched Intents -> " + uniqueBotOutputIntent.size());
-    return uniqueBotOutputIntent;
-  }
 
-  /***
-   * Parse Entities from Watson Conversation workspace and store translatable
-   * content
-   * 
-   * @param jsonWCSPayload
-   * @return uniqueBotOutputEntity
-   * @throws IOException
-   */
-  private Map<String, TreeSet<String>> parseWCSEntities(JsonObject jsonWCSPayload) throws IOException {
-    // Fetch Entities from Watson Conversation File
-    System.out.println("\n");
-    System.out.println("   ***** Fetching Entities *****");
-    JsonArray entities = jsonWCSPayload.getAsJsonArray("entities");
-    TreeMap<String, TreeSet<String>> uniqueBotOutputEntity = new TreeMap<String, TreeSet<String>>();
-
-    if (entities.size() > 0) {
-      for (JsonElement entitiesArray : entities) {
-        JsonObject entityObj = entitiesArray.getAsJsonObject();
-        JsonArray valuesEx = (JsonArray) entityObj.get("values");
-
-        if (valuesEx.size() > 0) {
-          // get entity
-          String entityValue = entityObj.get("entity").getAsString();
-          for (JsonElement entitiesText : valuesEx) {
-            JsonObject entityValObj = entitiesText.getAsJsonObject();
-            // get value
-            String entityVal = entityValObj.get("value").getAsString();
-            String entityKey = entityValue + ":" + entityVal;
-
-            if (!uniqueBotOutputEntity.containsKey(entityKey)) {
-              TreeSet<String> entitySet = new TreeSet<String>();
-              entitySet.add(entityVal);
-              uniqueBotOutputEntity.put(entityKey, entitySet);
-            } else {
-              // Collision occurred
-              uniqueBotOutputEntity.get(entityKey).add(entityVal);
-            }
-            entityKey = null;
-            // get synonyms
-            JsonArray synonymsVal = (JsonArray) entityValObj.get("synonyms");
-
-            for (JsonElement synonymText : synonymsVal) {
-              String synonymVal = synonymText.getAsString();
-              entityKey = entityValue + ":" + synonymVal;
-              if (!uniqueBotOutputEntity.containsKey(entityKey)) {
-                TreeSet<String> entitySynonym = new TreeSet<String>();
-                entitySynonym.add(synonymVal);
-                uniqueBotOutputEntity.put(entityKey, entitySynonym);
-              } else {
-                // Collision Occurred
-                uniqueBotOutputEntity.get(entityKey).add(synonymVal);
-              }
-              entityKey = null;
-            }
-          }
-        }
-        // else if size < 0 -> no entity values defined. Ignore...
-      }
-    }
-    // else if size < 0 -> No Entities Defined in the WCS workspace.
-    // Ignore...
-    System.out.println("   Fetched Entities -> " + uniqueBotOutputEntity.size());
-    return uniqueBotOutputEntity;
-  }
+    // Get Watson Conv Creds
+    String wcsCreds = getWCSCreds();
 
-  /***
-   * Parse Dialogs from Watson Conversation workspace and store translatable
-   * content
-   * 
-   * @param jsonWCSPayload
-   * @return uniqueBotOutputDialog
-   */
-  private Map<String, TreeSet<String>> parseWCSDialogs(JsonObject jsonWCSPayload) {
-    // Fetch Output from Dialog Nodes using Watson Conversation File
-    System.out.println("\n");
-    System.out.println("   ***** Fetching Dialog Nodes *****");
-    JsonArray dialogNodes = jsonWCSPayload.getAsJsonArray("dialog_nodes");
-    TreeMap<String, TreeSet<String>> uniqueBotOutputDialog = new TreeMap<String, TreeSet<String>>();
-
-    if (dialogNodes.size() > 0) {
-      for (JsonElement dialogArray : dialogNodes) {
-        JsonObject dialogNodeObj = dialogArray.getAsJsonObject();
-        JsonElement element = dialogNodeObj.get("output");
-        if (!(element instanceof JsonNull)) {
-          JsonObject outputEx = (JsonObject) element;
-          JsonElement valuesTextEx = (JsonElement) outputEx.get("text");
-          if (!(valuesTextEx instanceof JsonNull)) {
-            if (valuesTextEx != null) {
-              // text is either a String, JsonArray or JsonObject
-              if (valuesTextEx.isJsonPrimitive()) {
-                if (valuesTextEx.getAsJsonPrimitive().isString()) {
-                  // text is String
-                  String textVal = valuesTextEx.getAsString();
-                  if (textVal != null && textVal.length() > 0) {
-                    Integer textHashCode = textVal.hashCode();
-                    String result = Integer.toHexString(textHashCode);
-                    String append = null;
-                    if (textVal.length() < 5) {
-                      append = textVal.substring(0, textVal.length());
-                    } else {
-                      append = textVal.substring(0, 4);
-                    }
-                    result = append + "_" + result;
-                    if (!uniqueBotOutputDialog.containsKey(result)) {
-                      TreeSet<String> dialogTreeSet = new TreeSet<String>();
-                      dialogTreeSet.add(textVal);
-                      uniqueBotOutputDialog.put(result, dialogTreeSet);
-                    } else {
-                      // Collision Occurred
-                      uniqueBotOutputDialog.get(result).add(textVal);
-                    }
-                  }
-                }
-              } else {
-                if (valuesTextEx.isJsonArray()) {
-                  // text is JsonArray
-                  JsonArray jsonNodes = valuesTextEx.getAsJsonArray();
-                  if (jsonNodes.size() > 0) {
-                    for (JsonElement jsonArray : jsonNodes) {
-                      String jsonText = jsonArray.getAsString();
-                      if (jsonText != null && jsonText.length() > 0) {
-                        Integer jsonHashCode = jsonText.hashCode();
-                        String result = Integer.toHexString(jsonHashCode);
-                        String append = null;
-                        if (jsonText.length() < 5) {
-                          append = jsonText.substring(0, jsonText.length());
-                        } else {
-                          append = jsonText.substring(0, 4);
-                        }
-                        result = append + "_" + result;
-                        if (!uniqueBotOutputDialog.containsKey(result)) {
-                          TreeSet<String> dialogJSONSet = new TreeSet<String>();
-                          dialogJSONSet.add(jsonText);
-                          uniqueBotOutputDialog.put(result, dialogJSONSet);
-                        } else {
-                          // Collision Occurred
-                          uniqueBotOutputDialog.get(result).add(jsonText);
-                        }
-                      }
-                    }
-                  }
-                  // else ignore empty text
-                } else {
-                  if (valuesTextEx.isJsonObject()) {
-                    // text is JsonArray
-                    JsonObject jsonTextObj = (JsonObject) valuesTextEx;
-                    // Text contains values
-                    JsonArray valuesNodes = jsonTextObj.getAsJsonArray("values");
-                    if (valuesNodes.size() > 0) {
-                      for (JsonElement valuesArray : valuesNodes) {
-                        String valuesText = valuesArray.getAsString();
-                        if (valuesText != null && valuesText.length() > 0) {
-                          Integer valuesHashCode = valuesText.hashCode();
-                          String result = Integer.toHexString(valuesHashCode);
-                          String append = null;
-                          if (valuesText.length() < 5) {
-                            append = valuesText.substring(0, valuesText.length());
-                          } else {
-                            append = valuesText.substring(0, 4);
-                          }
-                          result = append + "_" + result;
-                          if (!uniqueBotOutputDialog.containsKey(result)) {
-                            TreeSet<String> dialogObjectSet = new TreeSet<String>();
-                            dialogObjectSet.add(valuesText);
-                            uniqueBotOutputDialog.put(result, dialogObjectSet);
-                          } else {
-                            // Collision Occurred
-                            uniqueBotOutputDialog.get(result).add(valuesText);
-                          }
-                        }
-                      }
-                    }
-                    // else ignore
-                  }
-                }
-              }
-            }
-          }
-        }
-      }
-    }
-    // else if size < 0 -> No Dialog Nodes Defined in the WCS workspace.
-    // Ignore...
-    System.out.println("   Fetched Dialog Nodes -> " + uniqueBotOutputDialog.size());
-    return uniqueBotOutputDialog;
+    // Get Params
+    String workspaceId = getSourceworkspaceId();
+    String versionDate = getVersionDate();
+
+    WCSUtils.streamWCSWorkspace(wcsCreds, workspaceId, versionDate, extractor);
+    return extractor;
   }
 }
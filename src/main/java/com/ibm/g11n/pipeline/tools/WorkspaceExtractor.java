@@ -0,0 +1,245 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Extracts translatable content of a Watson Conversation workspace in a single
+ * pass over its intents, entities and dialog nodes
+ * 
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class WorkspaceExtractor {
+
+  // Array elements extracted by a single fork join task
+  private static final int SPLIT_THRESHOLD = 256;
+
+  private WorkspaceExtractor() {
+  }
+
+  /***
+   * Extract translatable content of a workspace
+   * 
+   * @param workspace
+   * @return content
+   */
+  static TranslatableContent extract(JsonObject workspace) {
+    return extract(workspace, null);
+  }
+
+  /***
+   * Extract translatable content of a workspace. With a pool, intents,
+   * entities and dialog nodes are extracted in parallel, each array split
+   * into ranges extracted by separate tasks into their own lists
+   * 
+   * @param workspace
+   * @param pool
+   *          fork join pool, null to extract on the calling thread
+   * @return content
+   */
+  static TranslatableContent extract(JsonObject workspace, ForkJoinPool pool) {
+    TranslatableContent content = new TranslatableContent();
+    List<ExtractTask> tasks = new ArrayList<ExtractTask>();
+    for (Entry<String, JsonElement> member : workspace.entrySet()) {
+      String name = member.getKey();
+      JsonElement value = member.getValue();
+      Section section = null;
+      if (name.equals("language") && isString(value)) {
+        content.setLanguage(value.getAsString());
+      } else if (name.equals("intents") && value.isJsonArray()) {
+        section = Section.INTENTS;
+      } else if (name.equals("entities") && value.isJsonArray()) {
+        section = Section.ENTITIES;
+      } else if (name.equals("dialog_nodes") && value.isJsonArray()) {
+        section = Section.DIALOGS;
+      }
+      if (section != null) {
+        JsonArray array = value.getAsJsonArray();
+        if (pool == null) {
+          List<TranslatableUnit> units = new ArrayList<TranslatableUnit>();
+          extract(section, array, 0, array.size(), units);
+          content.addAll(units);
+        } else {
+          tasks.add(new ExtractTask(section, array, 0, array.size()));
+        }
+      }
+    }
+    for (ExtractTask task : tasks) {
+      pool.execute(task);
+    }
+    for (ExtractTask task : tasks) {
+      content.addAll(task.join());
+    }
+    return content;
+  }
+
+  /***
+   * Extraction of a range of a section array. Large ranges are split in two
+   * halves, the units of both halves are concatenated in workspace order
+   */
+  private static final class ExtractTask extends RecursiveTask<List<TranslatableUnit>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Section section;
+    private final JsonArray array;
+    private final int from;
+    private final int to;
+
+    ExtractTask(Section section, JsonArray array, int from, int to) {
+      this.section = section;
+      this.array = array;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected List<TranslatableUnit> compute() {
+      if (to - from <= SPLIT_THRESHOLD) {
+        List<TranslatableUnit> units = new ArrayList<TranslatableUnit>();
+        extract(section, array, from, to, units);
+        return units;
+      }
+      int middle = (from + to) >>> 1;
+      ExtractTask left = new ExtractTask(section, array, from, middle);
+      left.fork();
+      List<TranslatableUnit> right = new ExtractTask(section, array, middle, to).compute();
+      List<TranslatableUnit> units = left.join();
+      units.addAll(right);
+      return units;
+    }
+  }
+
+  private static void extract(Section section, JsonArray array, int from, int to, List<TranslatableUnit> units) {
+    switch (section) {
+    case INTENTS:
+      extractIntents(array, from, to, units);
+      break;
+    case ENTITIES:
+      extractEntities(array, from, to, units);
+      break;
+    default:
+      extractDialogs(array, from, to, units);
+    }
+  }
+
+  private static void extractIntents(JsonArray intents, int from, int to, List<TranslatableUnit> units) {
+    for (int group = from; group < to; group++) {
+      JsonArray examples = getArray(intents.get(group), "examples");
+      if (examples == null) {
+        continue;
+      }
+      for (int item = 0; item < examples.size(); item++) {
+        JsonElement text = get(examples.get(item), "text");
+        if (isText(text)) {
+          units.add(new TranslatableUnit(Kind.INTENT_EXAMPLE, null, text.getAsString(), group, item, -1));
+        }
+      }
+    }
+  }
+
+  private static void extractEntities(JsonArray entities, int from, int to, List<TranslatableUnit> units) {
+    for (int group = from; group < to; group++) {
+      JsonElement entity = get(entities.get(group), "entity");
+      JsonArray values = getArray(entities.get(group), "values");
+      if (values == null || !isString(entity)) {
+        continue;
+      }
+      String entityName = entity.getAsString();
+      for (int item = 0; item < values.size(); item++) {
+        JsonElement value = get(values.get(item), "value");
+        if (isString(value)) {
+          units.add(new TranslatableUnit(Kind.ENTITY_VALUE, entityName, value.getAsString(), group, item, -1));
+        }
+        JsonArray synonyms = getArray(values.get(item), "synonyms");
+        if (synonyms != null) {
+          for (int index = 0; index < synonyms.size(); index++) {
+            if (isString(synonyms.get(index))) {
+              units.add(new TranslatableUnit(Kind.ENTITY_SYNONYM, entityName, synonyms.get(index).getAsString(),
+                  group, item, index));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void extractDialogs(JsonArray dialogNodes, int from, int to, List<TranslatableUnit> units) {
+    for (int group = from; group < to; group++) {
+      JsonElement text = get(get(dialogNodes.get(group), "output"), "text");
+      if (isText(text)) {
+        units.add(new TranslatableUnit(Kind.DIALOG_TEXT, null, text.getAsString(), group, -1, -1));
+      } else if (text != null && text.isJsonArray()) {
+        extractTexts(Kind.DIALOG_TEXT_ARRAY, text.getAsJsonArray(), group, units);
+      } else {
+        JsonArray values = getArray(text, "values");
+        if (values != null) {
+          extractTexts(Kind.DIALOG_TEXT_VALUES, values, group, units);
+        }
+      }
+
+      JsonElement condition = get(dialogNodes.get(group), "conditions");
+      if (isString(condition)) {
+        String conditions = condition.getAsString();
+        if (conditions.contains("@") && conditions.contains(":")) {
+          units.add(new TranslatableUnit(Kind.DIALOG_CONDITION, null, conditions, group, -1, -1));
+        }
+      }
+    }
+  }
+
+  private static void extractTexts(Kind kind, JsonArray texts, int group, List<TranslatableUnit> units) {
+    for (int index = 0; index < texts.size(); index++) {
+      if (isText(texts.get(index))) {
+        units.add(new TranslatableUnit(kind, null, texts.get(index).getAsString(), group, -1, index));
+      }
+    }
+  }
+
+  private static JsonElement get(JsonElement element, String name) {
+    if (element == null || !element.isJsonObject()) {
+      return null;
+    }
+    return element.getAsJsonObject().get(name);
+  }
+
+  private static JsonArray getArray(JsonElement element, String name) {
+    JsonElement array = get(element, name);
+    return array != null && array.isJsonArray() ? array.getAsJsonArray() : null;
+  }
+
+  private static boolean isString(JsonElement element) {
+    return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+  }
+
+  // Non empty String
+  private static boolean isText(JsonElement element) {
+    return isString(element) && element.getAsString().length() > 0;
+  }
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/***
+ * Generates synthetic Watson Conversation workspace exports for load tests
+ * and benchmarks. The same seed and settings always give the same
+ * workspace. Dialog node text is a String, an array or a values object in
+ * equal parts and conditions refer to generated entity values. A share of
+ * the texts repeat an earlier text, and a share come in pairs with the same
+ * key prefix and the same String.hashCode, so that they collide under the
+ * legacy key scheme.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+@Parameters(commandDescription = "Generate a synthetic workspace for load testing")
+final class WorkspaceGenerator implements Command {
+
+  private static final String[] WORDS = { "account", "address", "after", "again", "agent", "airport", "all",
+      "am", "and", "any", "appointment", "are", "available", "bag", "balance", "bank", "bill", "book", "booking",
+      "breakfast", "bus", "but", "buy", "call", "can", "cancel", "car", "card", "change", "charge", "check", "city",
+      "close", "could", "credit", "customer", "date", "day", "delivery", "did", "do", "does", "door", "early",
+      "email", "evening", "fee", "find", "flight", "for", "from", "get", "give", "go", "have", "help", "here",
+      "home", "hotel", "how", "I", "in", "is", "it", "know", "large", "late", "like", "long", "lost", "make", "me",
+      "menu", "money", "month", "more", "morning", "my", "need", "new", "next", "night", "not", "now", "number",
+      "of", "off", "on", "open", "order", "password", "pay", "payment", "phone", "please", "price", "refund",
+      "reset", "room", "seat", "send", "service", "should", "show", "small", "some", "status", "still", "store",
+      "table", "tell", "thank", "that", "the", "there", "ticket", "time", "to", "today", "tomorrow", "train",
+      "transfer", "two", "update", "upgrade", "wait", "want", "week", "what", "when", "where", "which", "why",
+      "will", "window", "with", "would", "you", "your" };
+
+  // Two character blocks with the same String.hashCode
+  private static final String COLLISION_A = "Aa";
+  private static final String COLLISION_B = "BB";
+
+  @Parameter(names = { "--seed" }, description = "Random seed")
+  private long seed = 42;
+
+  @Parameter(names = { "--intents" }, description = "Number of intents")
+  private int intents = 100;
+
+  @Parameter(names = { "--examples" }, description = "Examples per intent")
+  private int examples = 10;
+
+  @Parameter(names = { "--entities" }, description = "Number of entities")
+  private int entities = 50;
+
+  @Parameter(names = { "--values" }, description = "Values per entity")
+  private int values = 5;
+
+  @Parameter(names = { "--synonyms" }, description = "Synonyms per entity value")
+  private int synonyms = 3;
+
+  @Parameter(names = { "--dialogNodes" }, description = "Number of dialog nodes")
+  private int dialogNodes = 200;
+
+  @Parameter(names = { "--minWords" }, description = "Minimum number of words of a text")
+  private int minWords = 2;
+
+  @Parameter(names = { "--maxWords" }, description = "Maximum number of words of a text")
+  private int maxWords = 20;
+
+  @Parameter(names = { "--duplicateRate" }, description = "Share of texts repeating an earlier text, 0 to 1")
+  private double duplicateRate = 0.05;
+
+  @Parameter(names = {
+      "--collisionRate" }, description = "Share of texts colliding with another text under key scheme 1, 0 to 1")
+  private double collisionRate = 0.01;
+
+  @Parameter(names = { "-o", "--outputFile" }, description = "Workspace JSON file to write", required = true)
+  private String outputFile;
+
+  private Random random;
+  private final List<String> texts = new ArrayList<String>();
+  private String pendingCollision;
+
+  WorkspaceGenerator() {
+  }
+
+  /***
+   * Generator with the default text distributions
+   *
+   * @param seed
+   * @param intents
+   *          number of intents of 10 examples
+   * @param entities
+   *          number of entities of 5 values with 3 synonyms
+   * @param dialogNodes
+   */
+  WorkspaceGenerator(long seed, int intents, int entities, int dialogNodes) {
+    this.seed = seed;
+    this.intents = intents;
+    this.entities = entities;
+    this.dialogNodes = dialogNodes;
+  }
+
+  /***
+   * Text distributions
+   *
+   * @param minWords
+   * @param maxWords
+   * @param duplicateRate
+   *          share of texts repeating an earlier text
+   * @param collisionRate
+   *          share of texts colliding with another text under key scheme 1
+   */
+  void setDistribution(int minWords, int maxWords, double duplicateRate, double collisionRate) {
+    this.minWords = minWords;
+    this.maxWords = maxWords;
+    this.duplicateRate = duplicateRate;
+    this.collisionRate = collisionRate;
+  }
+
+  /***
+   * Generate the workspace and write it to the output file
+   *
+   * @throws IOException
+   */
+  @Override
+  public void execute() throws IOException {
+    long start = System.nanoTime();
+    JsonObject workspace = generate();
+    Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    try (Writer writer = Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)) {
+      gson.toJson(workspace, writer);
+    }
+    System.out.println("Generated workspace " + outputFile + " with " + intents + " intents, " + intents * examples
+        + " examples, " + entities + " entities, " + dialogNodes + " dialog nodes in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+
+  /***
+   * Generate the workspace
+   *
+   * @return workspace
+   */
+  JsonObject generate() {
+    if (minWords < 1 || maxWords < minWords) {
+      throw new IllegalArgumentException("Words per text must be at least 1 and maxWords at least minWords");
+    }
+    random = new Random(seed);
+    texts.clear();
+    pendingCollision = null;
+
+    JsonObject workspace = new JsonObject();
+    workspace.addProperty("name", "generated-" + seed);
+    workspace.addProperty("description", "Synthetic workspace generated with seed " + seed);
+    workspace.addProperty("language", "en");
+
+    JsonArray intentArray = new JsonArray(intents);
+    for (int i = 0; i < intents; i++) {
+      JsonObject intent = new JsonObject();
+      intent.addProperty("intent", "intent_" + i);
+      JsonArray exampleArray = new JsonArray(examples);
+      for (int e = 0; e < examples; e++) {
+        JsonObject example = new JsonObject();
+        example.addProperty("text", text());
+        exampleArray.add(example);
+      }
+      intent.add("examples", exampleArray);
+      intentArray.add(intent);
+    }
+    workspace.add("intents", intentArray);
+
+    // Entity values referred to by conditions
+    List<String> references = new ArrayList<String>(entities * values);
+    JsonArray entityArray = new JsonArray(entities);
+    for (int i = 0; i < entities; i++) {
+      JsonObject entity = new JsonObject();
+      String entityName = "entity_" + i;
+      entity.addProperty("entity", entityName);
+      JsonArray valueArray = new JsonArray(values);
+      for (int v = 0; v < values; v++) {
+        // Entity values are short and unique within their entity, values with
+        // spaces are referred to in parentheses
+        JsonObject value = new JsonObject();
+        if (random.nextInt(2) == 0) {
+          String valueText = WORDS[random.nextInt(WORDS.length)] + "_" + v;
+          value.addProperty("value", valueText);
+          references.add("@" + entityName + ":" + valueText);
+        } else {
+          String valueText = words(2) + " " + v;
+          value.addProperty("value", valueText);
+          references.add("@" + entityName + ":(" + valueText + ")");
+        }
+        JsonArray synonymArray = new JsonArray(synonyms);
+        for (int s = 0; s < synonyms; s++) {
+          synonymArray.add(words(1 + random.nextInt(3)) + " " + s);
+        }
+        value.add("synonyms", synonymArray);
+        valueArray.add(value);
+      }
+      entity.add("values", valueArray);
+      entityArray.add(entity);
+    }
+    workspace.add("entities", entityArray);
+
+    JsonArray nodeArray = new JsonArray(dialogNodes);
+    for (int i = 0; i < dialogNodes; i++) {
+      JsonObject node = new JsonObject();
+      node.addProperty("dialog_node", "node_" + i);
+      if (!references.isEmpty() && random.nextInt(2) == 0) {
+        String condition = references.get(random.nextInt(references.size()));
+        if (intents > 0 && random.nextInt(4) == 0) {
+          condition = "#intent_" + random.nextInt(intents) + " && " + condition;
+        }
+        node.addProperty("conditions", condition);
+      } else if (intents > 0) {
+        node.addProperty("conditions", "#intent_" + random.nextInt(intents));
+      }
+      JsonObject output = new JsonObject();
+      switch (random.nextInt(3)) {
+      case 0:
+        output.addProperty("text", text());
+        break;
+      case 1:
+        output.add("text", textArray());
+        break;
+      default:
+        JsonObject text = new JsonObject();
+        text.add("values", textArray());
+        text.addProperty("selection_policy", "sequential");
+        output.add("text", text);
+      }
+      node.add("output", output);
+      if (i > 0) {
+        node.addProperty("previous_sibling", "node_" + (i - 1));
+      }
+      nodeArray.add(node);
+    }
+    workspace.add("dialog_nodes", nodeArray);
+    return workspace;
+  }
+
+  private JsonArray textArray() {
+    int count = 1 + random.nextInt(3);
+    JsonArray array = new JsonArray(count);
+    for (int i = 0; i < count; i++) {
+      array.add(text());
+    }
+    return array;
+  }
+
+  /***
+   * Next intent example or dialog text: the second text of a colliding pair,
+   * an earlier text or a new one
+   *
+   * @return text
+   */
+  private String text() {
+    String text;
+    if (pendingCollision != null) {
+      text = pendingCollision;
+      pendingCollision = null;
+    } else if (!texts.isEmpty() && random.nextDouble() < duplicateRate) {
+      text = texts.get(random.nextInt(texts.size()));
+    } else if (random.nextDouble() < collisionRate) {
+      // Same first words and same hash, only the last block differs
+      String base = words(Math.max(minWords, 2) + random.nextInt(maxWords - minWords + 1)) + " ";
+      text = base + COLLISION_A;
+      pendingCollision = base + COLLISION_B;
+    } else {
+      text = words(minWords + random.nextInt(maxWords - minWords + 1));
+    }
+    texts.add(text);
+    return text;
+  }
+
+  private String words(int count) {
+    StringBuilder sb = new StringBuilder(count * 8);
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    // Sentences start with a capital
+    sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.g11n.pipeline.tools;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Kind;
+
+/***
+ * Pulls translatable content straight off a Watson Conversation workspace
+ * stream without building the JSON tree. Only intent examples, entity
+ * values/synonyms and dialog output text are kept, so the heap used is
+ * proportional to the extracted strings rather than to the workspace. The
+ * units emitted are the same as the ones of WorkspaceExtractor.
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+final class WorkspaceStreamExtractor implements WCSUtils.WorkspaceStreamHandler {
+
+  private final TranslatableContent content = new TranslatableContent();
+
+  /***
+   * Read the workspace object and collect translatable content
+   *
+   * @param reader
+   * @throws IOException
+   */
+  @Override
+  public void read(JsonReader reader) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (reader.peek() == JsonToken.NULL) {
+        reader.skipValue();
+      } else if (name.equals("language") && reader.peek() == JsonToken.STRING) {
+        content.setLanguage(reader.nextString());
+      } else if (name.equals("intents") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        readIntents(reader);
+      } else if (name.equals("entities") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        readEntities(reader);
+      } else if (name.equals("dialog_nodes") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        readDialogs(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  public TranslatableContent getContent() {
+    return content;
+  }
+
+  /***
+   * Read intents array -> examples -> text
+   *
+   * @param reader
+   * @throws IOException
+   */
+  private void readIntents(JsonReader reader) throws IOException {
+    reader.beginArray();
+    for (int group = 0; reader.hasNext(); group++) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("examples") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          for (int item = 0; reader.hasNext(); item++) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+              reader.skipValue();
+              continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+              String exName = reader.nextName();
+              if (exName.equals("text") && reader.peek() == JsonToken.STRING) {
+                addText(Kind.INTENT_EXAMPLE, reader.nextString(), group, item, -1);
+              } else {
+                reader.skipValue();
+              }
+            }
+            reader.endObject();
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+    reader.endArray();
+  }
+
+  /***
+   * Read entities array -> values -> value and synonyms. The entity name may
+   * appear after its values, so the values of one entity are held until the
+   * entity object ends.
+   *
+   * @param reader
+   * @throws IOException
+   */
+  private void readEntities(JsonReader reader) throws IOException {
+    List<TranslatableUnit> values = new ArrayList<TranslatableUnit>();
+    reader.beginArray();
+    for (int group = 0; reader.hasNext(); group++) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+      String entity = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("entity") && reader.peek() == JsonToken.STRING) {
+          entity = reader.nextString();
+        } else if (name.equals("values") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          for (int item = 0; reader.hasNext(); item++) {
+            readEntityValue(reader, values, group, item);
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      if (entity != null) {
+        for (TranslatableUnit value : values) {
+          content.add(new TranslatableUnit(value.getKind(), entity, value.getText(), value.getGroup(),
+              value.getItem(), value.getIndex()));
+        }
+      }
+      values.clear();
+    }
+    reader.endArray();
+  }
+
+  private void readEntityValue(JsonReader reader, List<TranslatableUnit> values, int group, int item)
+      throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+    // Value first, then its synonyms
+    TranslatableUnit value = null;
+    List<TranslatableUnit> synonyms = new ArrayList<TranslatableUnit>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("value") && reader.peek() == JsonToken.STRING) {
+        value = new TranslatableUnit(Kind.ENTITY_VALUE, null, reader.nextString(), group, item, -1);
+      } else if (name.equals("synonyms") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+          if (reader.peek() == JsonToken.STRING) {
+            synonyms.add(new TranslatableUnit(Kind.ENTITY_SYNONYM, null, reader.nextString(), group, item, index));
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (value != null) {
+      values.add(value);
+    }
+    values.addAll(synonyms);
+  }
+
+  /***
+   * Read dialog_nodes array -> output -> text and conditions. Text is either a
+   * String, an array of Strings or an object holding a values array
+   *
+   * @param reader
+   * @throws IOException
+   */
+  private void readDialogs(JsonReader reader) throws IOException {
+    reader.beginArray();
+    for (int group = 0; reader.hasNext(); group++) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+      TranslatableUnit condition = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("output") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+          reader.beginObject();
+          while (reader.hasNext()) {
+            String outName = reader.nextName();
+            if (outName.equals("text")) {
+              readDialogText(reader, group);
+            } else {
+              reader.skipValue();
+            }
+          }
+          reader.endObject();
+        } else if (name.equals("conditions") && reader.peek() == JsonToken.STRING) {
+          String conditions = reader.nextString();
+          if (conditions.contains("@") && conditions.contains(":")) {
+            condition = new TranslatableUnit(Kind.DIALOG_CONDITION, null, conditions, group, -1, -1);
+          }
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      // Output text first, then conditions
+      if (condition != null) {
+        content.add(condition);
+      }
+    }
+    reader.endArray();
+  }
+
+  private void readDialogText(JsonReader reader, int group) throws IOException {
+    switch (reader.peek()) {
+    case STRING:
+      addText(Kind.DIALOG_TEXT, reader.nextString(), group, -1, -1);
+      break;
+    case BEGIN_ARRAY:
+      readTextArray(reader, Kind.DIALOG_TEXT_ARRAY, group);
+      break;
+    case BEGIN_OBJECT:
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("values") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          readTextArray(reader, Kind.DIALOG_TEXT_VALUES, group);
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      break;
+    default:
+      reader.skipValue();
+    }
+  }
+
+  private void readTextArray(JsonReader reader, Kind kind, int group) throws IOException {
+    reader.beginArray();
+    for (int index = 0; reader.hasNext(); index++) {
+      if (reader.peek() == JsonToken.STRING) {
+        addText(kind, reader.nextString(), group, -1, index);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endArray();
+  }
+
+  // Empty texts are not translatable
+  private void addText(Kind kind, String text, int group, int item, int index) {
+    if (text.length() > 0) {
+      content.add(new TranslatableUnit(kind, null, text, group, item, index));
+    }
+  }
+}
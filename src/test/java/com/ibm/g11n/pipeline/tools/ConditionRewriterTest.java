@@ -0,0 +1,132 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/***
+ * Tests of the rewriting of entity value references in dialog node
+ * conditions
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+public class ConditionRewriterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AsyncLogSink sink;
+  private AsyncLogSink.Logger log;
+  private ConditionRewriter rewriter;
+
+  @Before
+  public void setUp() throws IOException {
+    sink = new AsyncLogSink(new File(folder.getRoot(), "untranslated.log").getPath(), AsyncLogSink.QUEUE_CAPACITY);
+    log = sink.forLanguage("fr");
+    Map<String, String> entitiesBundle = new HashMap<String, String>();
+    entitiesBundle.put("city:paris", "Paris");
+    entitiesBundle.put("city:london", "Londres la grande");
+    entitiesBundle.put("city:new", "nouveau");
+    entitiesBundle.put("city:new_york", "nueva_york");
+    entitiesBundle.put("city:new york", "Nouvelle York");
+    entitiesBundle.put("city:rome", "");
+    entitiesBundle.put("sys-date:today", "aujourd_hui");
+    rewriter = new ConditionRewriter(entitiesBundle);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    sink.close();
+  }
+
+  @Test
+  public void testBareValue() {
+    assertEquals("@city:Paris", rewriter.rewrite("@city:paris", log));
+    assertEquals("@sys-date:aujourd_hui", rewriter.rewrite("@sys-date:today", log));
+    assertEquals(0, sink.getRecordCount());
+  }
+
+  @Test
+  public void testBareValueTranslatedToSeveralWords() {
+    assertEquals("@city:(Londres la grande)", rewriter.rewrite("@city:london", log));
+  }
+
+  @Test
+  public void testParenthesizedValue() {
+    assertEquals("@city:(Nouvelle York)", rewriter.rewrite("@city:(new york)", log));
+    assertEquals("@city:(Paris)", rewriter.rewrite("@city:(paris)", log));
+  }
+
+  @Test
+  public void testQuotedValue() {
+    assertEquals("@city:\"Nouvelle York\"", rewriter.rewrite("@city:\"new york\"", log));
+    assertEquals("@city:\"Paris\"", rewriter.rewrite("@city:\"paris\"", log));
+  }
+
+  @Test
+  public void testLongestMatch() {
+    assertEquals("@city:nueva_york", rewriter.rewrite("@city:new_york", log));
+    assertEquals("@city:nouveau", rewriter.rewrite("@city:new", log));
+    // A bare value ends on a word boundary
+    assertEquals("@city:newark", rewriter.rewrite("@city:newark", log));
+    assertEquals(1, sink.getRecordCount());
+  }
+
+  @Test
+  public void testConjunction() {
+    assertEquals("#visit && @city:Paris && @city:(Nouvelle York) && @city:nueva_york",
+        rewriter.rewrite("#visit && @city:paris && @city:(new york) && @city:new_york", log));
+    assertEquals("@city:Paris&&@sys-date:aujourd_hui", rewriter.rewrite("@city:paris&&@sys-date:today", log));
+    assertEquals(0, sink.getRecordCount());
+  }
+
+  @Test
+  public void testMissingValuesKept() {
+    // Not translated, not on GP, unknown entity
+    assertEquals("@city:rome && @city:berlin && @country:france",
+        rewriter.rewrite("@city:rome && @city:berlin && @country:france", log));
+    assertEquals(3, sink.getRecordCount());
+  }
+
+  @Test
+  public void testNoReference() {
+    assertEquals("#greeting || $visits > 2", rewriter.rewrite("#greeting || $visits > 2", log));
+    assertEquals("mail@example.com", rewriter.rewrite("mail@example.com", log));
+    assertEquals(0, sink.getRecordCount());
+  }
+
+  @Test
+  public void testCachedConditionLogsAgain() {
+    assertEquals("@city:Paris || @city:rome", rewriter.rewrite("@city:paris || @city:rome", log));
+    assertEquals("@city:Paris || @city:rome", rewriter.rewrite("@city:paris || @city:rome", log));
+    assertEquals(2, sink.getRecordCount());
+  }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Tests of the translated workspace written by TranslationApplier: duplicates
+ * introduced by translation are dropped, and rebuilt arrays match the element
+ * by element removal GP_To_WCS did before
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+public class TranslationApplierTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AsyncLogSink sink;
+  private AsyncLogSink.Logger log;
+
+  @Before
+  public void setUp() throws IOException {
+    sink = new AsyncLogSink(new File(folder.getRoot(), "untranslated.log").getPath(), AsyncLogSink.QUEUE_CAPACITY);
+    log = sink.forLanguage("fr");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    sink.close();
+  }
+
+  @Test
+  public void testDuplicateExamplesRemoved() {
+    JsonObject workspace = parseObject("{\"intents\":[{\"intent\":\"greet\",\"examples\":[{\"text\":\"Hello\"},"
+        + "{\"text\":\"Hi\"},{\"text\":\"Hey there\"},{\"text\":\"Good day\"},{\"text\":\"Howdy\"}]}]}");
+    ResourceKeys keys = new ResourceKeys(ResourceKeys.LEGACY);
+    Map<String, String> bundle = new HashMap<String, String>();
+    bundle.put(keys.key("Hello"), "Bonjour");
+    bundle.put(keys.key("Hi"), "bonjour");
+    bundle.put(keys.key("Hey there"), "Salut");
+    bundle.put(keys.key("Good day"), "");
+
+    new TranslationApplier(WorkspaceExtractor.extract(workspace)).applyIntents(workspace, bundle, log);
+
+    assertEquals(parse("[{\"text\":\"Bonjour\"},{\"text\":\"Salut\"},{\"text\":\"Good day\"},{\"text\":\"Howdy\"}]"),
+        workspace.getAsJsonArray("intents").get(0).getAsJsonObject().get("examples"));
+    assertEquals(1, sink.getRecordCount());
+  }
+
+  @Test
+  public void testDuplicateEntityValuesAndSynonymsRemoved() {
+    JsonObject workspace = parseObject("{\"entities\":[{\"entity\":\"city\",\"values\":["
+        + "{\"value\":\"paris\",\"synonyms\":[\"city of light\",\"capital\",\"the capital\"]},"
+        + "{\"value\":\"Paris\",\"synonyms\":[]},{\"value\":\"rome\",\"synonyms\":[\"eternal city\"]}]}]}");
+    Map<String, String> bundle = new HashMap<String, String>();
+    bundle.put("city:paris", "Paris");
+    bundle.put("city:city of light", "ville lumiere");
+    bundle.put("city:capital", "capitale");
+    bundle.put("city:the capital", "Capitale");
+    bundle.put("city:Paris", "PARIS");
+    bundle.put("city:rome", "Rome");
+
+    new TranslationApplier(WorkspaceExtractor.extract(workspace)).applyEntities(workspace, bundle, log);
+
+    assertEquals(parse("[{\"value\":\"Paris\",\"synonyms\":[\"ville lumiere\",\"capitale\"]},"
+        + "{\"value\":\"Rome\",\"synonyms\":[\"eternal city\"]}]"),
+        workspace.getAsJsonArray("entities").get(0).getAsJsonObject().get("values"));
+  }
+
+  @Test
+  public void testGeneratedIntentsMatchBaseline() {
+    JsonObject workspace = generate();
+    TranslatableContent content = WorkspaceExtractor.extract(workspace);
+    Map<String, String> bundle = translate(content.toResourceMap(Section.INTENTS,
+        new ResourceKeys(ResourceKeys.LEGACY)));
+    JsonObject source = copy(workspace);
+    JsonObject expected = copy(workspace);
+    baselineIntents(expected, bundle);
+
+    new TranslationApplier(content).applyIntents(workspace, bundle, log);
+
+    assertTrue(size(expected, "intents", "examples") < size(source, "intents", "examples"));
+    assertEquals(expected, workspace);
+  }
+
+  @Test
+  public void testGeneratedIntentsWithV2Keys() {
+    JsonObject workspace = generate();
+    TranslatableContent content = WorkspaceExtractor.extract(workspace);
+    JsonObject expected = copy(workspace);
+    baselineIntents(expected, translate(content.toResourceMap(Section.INTENTS,
+        new ResourceKeys(ResourceKeys.LEGACY))));
+
+    // Same translations keyed with scheme 2, found by detecting the scheme
+    Map<String, String> bundle = translate(content.toResourceMap(Section.INTENTS, new ResourceKeys(ResourceKeys.V2)));
+    new TranslationApplier(content).applyIntents(workspace, bundle, log);
+
+    assertEquals(expected, workspace);
+  }
+
+  @Test
+  public void testGeneratedEntitiesMatchBaseline() {
+    JsonObject workspace = generate();
+    TranslatableContent content = WorkspaceExtractor.extract(workspace);
+    Map<String, String> bundle = translate(content.toResourceMap(Section.ENTITIES,
+        new ResourceKeys(ResourceKeys.LEGACY)));
+    JsonObject source = copy(workspace);
+    JsonObject expected = copy(workspace);
+    baselineEntities(expected, bundle);
+
+    new TranslationApplier(content).applyEntities(workspace, bundle, log);
+
+    assertTrue(size(expected, "entities", "values") < size(source, "entities", "values"));
+    assertEquals(expected, workspace);
+  }
+
+  private static JsonObject generate() {
+    WorkspaceGenerator generator = new WorkspaceGenerator(42, 40, 40, 0);
+    // Short texts, so that translations often collide
+    generator.setDistribution(1, 3, 0.2, 0.05);
+    return generator.generate();
+  }
+
+  /***
+   * Translations folding texts onto their first word, in either case, so
+   * that translation introduces duplicates. Some texts are left untranslated
+   * and some are missing from the bundle
+   *
+   * @param resources
+   * @return bundle
+   */
+  private static Map<String, String> translate(Map<String, TreeSet<String>> resources) {
+    Map<String, String> bundle = new HashMap<String, String>();
+    for (Entry<String, TreeSet<String>> entry : resources.entrySet()) {
+      String text = entry.getValue().first();
+      int hash = text.hashCode();
+      if (hash % 11 == 0) {
+        continue;
+      }
+      String translation = hash % 7 == 0 ? "" : text.split("[ _]")[0];
+      bundle.put(entry.getKey(), (hash & 1) == 0 ? translation : translation.toUpperCase());
+    }
+    return bundle;
+  }
+
+  // Elements of the arrays of a section, to check that duplicates were dropped
+  private static int size(JsonObject workspace, String section, String array) {
+    int size = 0;
+    for (JsonElement group : workspace.getAsJsonArray(section)) {
+      size += group.getAsJsonObject().getAsJsonArray(array).size();
+    }
+    return size;
+  }
+
+  // Intent update of GP_To_WCS before TranslationApplier, duplicates removed
+  // one at a time. It removed the first element equal to the duplicate, an
+  // earlier identical example when there was one; the duplicate is removed
+  // here
+  private static void baselineIntents(JsonObject workspace, Map<String, String> intentsBundle) {
+    ResourceKeys keys = new ResourceKeys(ResourceKeys.LEGACY);
+    for (JsonElement intent : workspace.getAsJsonArray("intents")) {
+      JsonArray intentEx = intent.getAsJsonObject().getAsJsonArray("examples");
+      Set<String> intentSet = new HashSet<String>();
+      List<Integer> removeElements = new ArrayList<Integer>();
+      int i = 0;
+      for (JsonElement example : intentEx) {
+        JsonObject intentTextObj = example.getAsJsonObject();
+        String keyTobeInserted = intentsBundle.get(keys.key(intentTextObj.get("text").getAsString()));
+        if (keyTobeInserted != null && !keyTobeInserted.isEmpty()) {
+          if (intentSet.add(keyTobeInserted.toLowerCase())) {
+            intentTextObj.addProperty("text", keyTobeInserted);
+          } else {
+            removeElements.add(i);
+          }
+        }
+        i++;
+      }
+      for (int k = removeElements.size() - 1; k >= 0; k--) {
+        intentEx.remove(removeElements.get(k).intValue());
+      }
+    }
+  }
+
+  // Entity update of GP_To_WCS before TranslationApplier
+  private static void baselineEntities(JsonObject workspace, Map<String, String> entityMap) {
+    for (JsonElement entity : workspace.getAsJsonArray("entities")) {
+      JsonObject entityObj = entity.getAsJsonObject();
+      JsonArray valuesEx = entityObj.getAsJsonArray("values");
+      String entityName = entityObj.get("entity").getAsString();
+      Set<String> valueSet = new HashSet<String>();
+      List<Integer> removeElements = new ArrayList<Integer>();
+      int i = 0;
+      for (JsonElement value : valuesEx) {
+        JsonObject entityValObj = value.getAsJsonObject();
+        String keyTobeInserted = entityMap.get(entityName + ":" + entityValObj.get("value").getAsString());
+        if (keyTobeInserted != null && !keyTobeInserted.isEmpty() && keyTobeInserted.length() <= 64) {
+          if (valueSet.add(keyTobeInserted.toLowerCase())) {
+            entityValObj.addProperty("value", keyTobeInserted);
+          } else {
+            removeElements.add(i);
+          }
+        }
+        JsonArray synonymsVal = entityValObj.getAsJsonArray("synonyms");
+        if (synonymsVal.size() > 0) {
+          Set<String> synSet = new HashSet<String>();
+          JsonArray entitySet = new JsonArray();
+          for (JsonElement synonym : synonymsVal) {
+            String key = entityMap.get(entityName + ":" + synonym.getAsString());
+            if (key != null && !key.isEmpty() && synSet.add(key.toLowerCase())) {
+              entitySet.add(key);
+            }
+          }
+          if (entitySet.size() > 0) {
+            entityValObj.add("synonyms", entitySet);
+          }
+        } else {
+          entityValObj.remove("synonyms");
+        }
+        i++;
+      }
+      for (int k = removeElements.size() - 1; k >= 0; k--) {
+        valuesEx.remove(removeElements.get(k).intValue());
+      }
+    }
+  }
+
+  private static JsonObject copy(JsonObject workspace) {
+    return parseObject(workspace.toString());
+  }
+
+  private static JsonObject parseObject(String json) {
+    return parse(json).getAsJsonObject();
+  }
+
+  private static JsonElement parse(String json) {
+    return new JsonParser().parse(json);
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2017 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.ibm.g11n.pipeline.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.ibm.g11n.pipeline.tools.TranslatableUnit.Section;
+
+/***
+ * Regression test of the whole pipeline on a large generated workspace with
+ * colliding and duplicate texts: extraction, resource keys and translation
+ * with bundles holding the source texts, as WCS_To_GP uploads them
+ *
+ * @author Harpreet Chawla (hchawla@us.ibm.com)
+ *
+ */
+public class WorkspaceRoundTripTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AsyncLogSink sink;
+  private JsonObject workspace;
+  private TranslatableContent content;
+
+  @Before
+  public void setUp() throws IOException {
+    sink = new AsyncLogSink(new File(folder.getRoot(), "untranslated.log").getPath(), AsyncLogSink.QUEUE_CAPACITY);
+    WorkspaceGenerator generator = new WorkspaceGenerator(7, 200, 50, 500);
+    generator.setDistribution(1, 6, 0.1, 0.05);
+    workspace = generator.generate();
+    content = WorkspaceExtractor.extract(workspace);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    sink.close();
+  }
+
+  @Test
+  public void testCollisionsAndDuplicates() {
+    assertTrue(collisions(Section.INTENTS, ResourceKeys.LEGACY) > 0);
+    assertTrue(collisions(Section.DIALOGS, ResourceKeys.LEGACY) > 0);
+    assertEquals(0, collisions(Section.INTENTS, ResourceKeys.V2));
+    assertEquals(0, collisions(Section.DIALOGS, ResourceKeys.V2));
+
+    Set<String> texts = new HashSet<String>();
+    for (TranslatableUnit unit : content.getUnits(Section.INTENTS)) {
+      texts.add(unit.getText());
+    }
+    assertTrue(texts.size() < content.getUnits(Section.INTENTS).size());
+  }
+
+  @Test
+  public void testStreamingExtraction() throws IOException {
+    WorkspaceStreamExtractor extractor = new WorkspaceStreamExtractor();
+    extractor.read(new JsonReader(new StringReader(workspace.toString())));
+    TranslatableContent streamed = extractor.getContent();
+    assertEquals(content.getLanguage(), streamed.getLanguage());
+    for (Section section : Section.values()) {
+      List<TranslatableUnit> expected = content.getUnits(section);
+      List<TranslatableUnit> units = streamed.getUnits(section);
+      assertEquals(expected.size(), units.size());
+      for (int i = 0; i < units.size(); i++) {
+        assertEquals(describe(expected.get(i)), describe(units.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTrip() {
+    JsonObject translated = copy(workspace);
+    Map<String, String> entitiesBundle = bundle(Section.ENTITIES, ResourceKeys.LEGACY);
+    TranslationApplier applier = new TranslationApplier(content);
+    AsyncLogSink.Logger log = sink.forLanguage("en");
+    applier.applyIntents(translated, bundle(Section.INTENTS, ResourceKeys.V2), log);
+    applier.applyEntities(translated, entitiesBundle, log);
+    applier.applyDialogs(translated, bundle(Section.DIALOGS, ResourceKeys.V2), log, entitiesBundle);
+
+    // Only examples repeated within their intent are dropped
+    JsonObject expected = copy(workspace);
+    for (JsonElement intent : expected.getAsJsonArray("intents")) {
+      JsonArray examples = intent.getAsJsonObject().getAsJsonArray("examples");
+      Set<String> seen = new HashSet<String>();
+      JsonArray kept = new JsonArray();
+      for (JsonElement example : examples) {
+        if (seen.add(example.getAsJsonObject().get("text").getAsString().toLowerCase())) {
+          kept.add(example);
+        }
+      }
+      intent.getAsJsonObject().add("examples", kept);
+    }
+    assertEquals(expected, translated);
+    assertEquals(0, sink.getRecordCount());
+  }
+
+  @Test
+  public void testRoundTripWithLegacyKeys() {
+    JsonObject translated = copy(workspace);
+    TranslationApplier applier = new TranslationApplier(content);
+    applier.applyDialogs(translated, bundle(Section.DIALOGS, ResourceKeys.LEGACY), sink.forLanguage("en"),
+        bundle(Section.ENTITIES, ResourceKeys.LEGACY));
+
+    // Texts colliding under the legacy scheme share one resource string
+    int changed = 0;
+    JsonArray nodes = workspace.getAsJsonArray("dialog_nodes");
+    JsonArray translatedNodes = translated.getAsJsonArray("dialog_nodes");
+    for (int i = 0; i < nodes.size(); i++) {
+      if (!nodes.get(i).equals(translatedNodes.get(i))) {
+        changed++;
+      }
+    }
+    assertTrue(changed > 0);
+    assertTrue(changed <= collisions(Section.DIALOGS, ResourceKeys.LEGACY));
+  }
+
+  /***
+   * Bundle of a section as uploaded by WCS_To_GP, the first text of colliding
+   * texts is kept
+   *
+   * @param section
+   * @param scheme
+   * @return resource key -> text
+   */
+  private Map<String, String> bundle(Section section, int scheme) {
+    Map<String, String> bundle = new HashMap<String, String>();
+    for (Entry<String, TreeSet<String>> entry : content.toResourceMap(section, new ResourceKeys(scheme)).entrySet()) {
+      bundle.put(entry.getKey(), entry.getValue().first());
+    }
+    return bundle;
+  }
+
+  private int collisions(Section section, int scheme) {
+    int collisions = 0;
+    for (TreeSet<String> texts : content.toResourceMap(section, new ResourceKeys(scheme)).values()) {
+      collisions += texts.size() - 1;
+    }
+    return collisions;
+  }
+
+  private static String describe(TranslatableUnit unit) {
+    return unit.getKind() + " " + unit.getEntity() + " " + unit.getGroup() + " " + unit.getItem() + " "
+        + unit.getIndex() + " " + unit.getText();
+  }
+
+  private static JsonObject copy(JsonObject workspace) {
+    return new JsonParser().parse(workspace.toString()).getAsJsonObject();
+  }
+}